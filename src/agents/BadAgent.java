@@ -1,7 +1,5 @@
 package agents;
 
-import game.Game;
-
 import java.util.ArrayList;
 
 /**
@@ -20,15 +18,17 @@ public abstract class BadAgent extends Agent {
 
     /**
      * Calculates and returns perception zone of the bad agent.
+     * @param width Width of the field.
+     * @param height Height of the field.
      * @return Array with cell representing perception zone of the bad agent.
      */
-    public VisibilityZone[] getPerception() {
+    public VisibilityZone[] getPerception(int width, int height) {
         ArrayList<VisibilityZone> answer = new ArrayList<>();
         int step = perception / 2;
         for (int y = this.y-step; y <= this.y+step; y++) {
-            if (y < 0 || y >= Game.SIZE) continue;
+            if (y < 0 || y >= height) continue;
             for (int x = this.x-step; x <= this.x+step; x++) {
-                if (x < 0 || x >= Game.SIZE) continue;
+                if (x < 0 || x >= width) continue;
                 answer.add(new VisibilityZone(x, y));
             }
         }
@@ -1,7 +1,6 @@
 package agents;
 
 import algorithm.IncorrectDataException;
-import game.Game;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -23,7 +22,7 @@ public class Harry extends Agent {
     }
 
     /**
-     * Calculates and returns visibility zone of the Harry.
+     * Returns precomputed visibility zone of the Harry.
      * If scenario == 1, then visibility zone of Harry:
      * + + +
      * + H +
@@ -35,33 +34,27 @@ public class Harry extends Agent {
      * +       +
      *   + + +
      * Note: pluses (+) - visibility zone of Harry, H - Harry (not in visibility zone).
+     * @return Offsets of the cells in visibility zone of the Harry.
+     */
+    public Stencil getVisibilityStencil() {
+        return scenario == 1 ? Stencil.SCENARIO_1 : Stencil.SCENARIO_2;
+    }
+
+    /**
+     * Calculates and returns visibility zone of the Harry.
+     * Creates new objects for each call, use getVisibilityStencil() in the algorithms.
+     * @param width Width of the field.
+     * @param height Height of the field.
      * @return Array of objects Harry that are represented as visibility zone.
      * @throws IncorrectDataException
      */
-    public List<Harry> getVisibilityZone() throws IncorrectDataException {
+    public List<Harry> getVisibilityZone(int width, int height) throws IncorrectDataException {
         ArrayList<Harry> list = new ArrayList<>();
-        if (scenario == 1) {
-            if (this.y + 1 < Game.SIZE) list.add(new Harry(this.x, this.y+1, scenario));
-            if (this.y + 1 < Game.SIZE && this.x + 1 < Game.SIZE) list.add(new Harry(this.x+1, this.y+1, scenario));
-            if (this.x + 1 < Game.SIZE) list.add(new Harry(this.x+1, this.y, scenario));
-            if (this.x + 1 < Game.SIZE && this.y - 1 >= 0) list.add(new Harry(this.x+1, this.y-1, scenario));
-            if (this.y - 1 >= 0) list.add(new Harry(this.x, this.y-1, scenario));
-            if (this.x - 1 >= 0 && this.y - 1 >= 0) list.add(new Harry(this.x-1, this.y-1, scenario));
-            if (this.x - 1 >= 0) list.add(new Harry(this.x-1, this.y, scenario));
-            if (this.y + 1 < Game.SIZE && this.x - 1 >= 0) list.add(new Harry(this.x-1, this.y+1, scenario));
-        } else if (scenario == 2) {
-            if (x-1 >= 0 && y+2 < Game.SIZE) list.add(new Harry(x-1, y+2, scenario));
-            if (y+2 < Game.SIZE) list.add(new Harry(x, y+2, scenario));
-            if (x+1 < Game.SIZE && y+2 < Game.SIZE) list.add(new Harry(x+1, y+2, scenario));
-            if (x+2 < Game.SIZE && y+1 < Game.SIZE) list.add(new Harry(x+2, y+1, scenario));
-            if (x+2 < Game.SIZE) list.add(new Harry(x+2, y, scenario));
-            if (x+2 < Game.SIZE && y-1 >= 0) list.add(new Harry(x+2, y-1, scenario));
-            if (x+1 < Game.SIZE && y-2 >= 0) list.add(new Harry(x+1, y-2, scenario));
-            if (y-2 >= 0) list.add(new Harry(x, y-2, scenario));
-            if (x-1 >= 0 && y-2 >= 0) list.add(new Harry(x-1, y-2, scenario));
-            if (x-2 >= 0 && y-1 >= 0) list.add(new Harry(x-2, y-1, scenario));
-            if (x-2 >= 0) list.add(new Harry(x-2, y, scenario));
-            if (x-2 >= 0 && y+1 < Game.SIZE) list.add(new Harry(x-2, y+1, scenario));
+        Stencil stencil = getVisibilityStencil();
+        for (int i = 0; i < stencil.size(); i++) {
+            int cell = stencil.cell(i, x, y, width, height);
+            if (cell >= 0)
+                list.add(new Harry(cell % width, cell / width, scenario));
         }
         return list;
     }
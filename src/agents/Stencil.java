@@ -0,0 +1,91 @@
+package agents;
+
+/**
+ * Precomputed offsets of cells around the agent (visibility zone or movement).
+ * Allows to iterate over the cells without creation of new objects:
+ * <pre>
+ * for (int i = 0; i < stencil.size(); i++) {
+ *     int cell = stencil.cell(i, x, y, width, height);
+ *     if (cell < 0) continue;
+ *     ...
+ * }
+ * </pre>
+ * Offsets are ordered clockwise starting from the top cell.
+ */
+public final class Stencil {
+    /**
+     * Cells to which Harry can move:
+     * + + +
+     * + H +
+     * + + +
+     */
+    public static final Stencil MOVEMENT = new Stencil(
+            new int[]{0, 1, 1, 1, 0, -1, -1, -1},
+            new int[]{1, 1, 0, -1, -1, -1, 0, 1});
+
+    /**
+     * Visibility zone of Harry for the first scenario. Equals to the cells to which Harry can move.
+     */
+    public static final Stencil SCENARIO_1 = MOVEMENT;
+
+    /**
+     * Visibility zone of Harry for the second scenario:
+     *   + + +
+     * +       +
+     * +   H   +
+     * +       +
+     *   + + +
+     */
+    public static final Stencil SCENARIO_2 = new Stencil(
+            new int[]{-1, 0, 1, 2, 2, 2, 1, 0, -1, -2, -2, -2},
+            new int[]{2, 2, 2, 1, 0, -1, -2, -2, -2, -1, 0, 1});
+
+    private final int[] dx, dy;
+
+    private Stencil(int[] dx, int[] dy) {
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    /**
+     * Returns the amount of offsets in the stencil.
+     * @return the amount of offsets in the stencil.
+     */
+    public int size() {
+        return dx.length;
+    }
+
+    /**
+     * Returns offset for x axes.
+     * @param i Index of the offset.
+     * @return offset for x axes.
+     */
+    public int dx(int i) {
+        return dx[i];
+    }
+
+    /**
+     * Returns offset for y axes.
+     * @param i Index of the offset.
+     * @return offset for y axes.
+     */
+    public int dy(int i) {
+        return dy[i];
+    }
+
+    /**
+     * Calculates index of the cell (y * width + x) shifted by the offset from the given position.
+     * @param i Index of the offset.
+     * @param x x-coordinate of the center.
+     * @param y y-coordinate of the center.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @return index of the cell, -1 if the cell is outside the field.
+     */
+    public int cell(int i, int x, int y, int width, int height) {
+        int nx = x + dx[i], ny = y + dy[i];
+        if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+            return -1;
+        return ny * width + nx;
+    }
+}
@@ -1,8 +1,7 @@
 package algorithm;
 
 import agents.*;
-
-import java.util.*;
+import game.Field;
 
 /**
  * Improved A* algorithm.
@@ -10,258 +9,293 @@ import java.util.*;
 public class AStar extends Algorithm {
 
     /**
-     * Copy of the game field.
+     * Estimation of the distance to the book and to the exit.
      */
-    private final Agent[][] table;
+    private final Heuristic heuristic;
 
-    public AStar(Agent[][] table) {
-        this.table = Arrays.copyOf(table, table.length);
-        for (int i = 0; i < table.length; i++) {
-            this.table[i] = Arrays.copyOf(table[i], table[0].length);
-        }
+    /**
+     * Creates the algorithm with Chebyshev heuristics for any field.
+     */
+    public AStar() {
+        this(null, Heuristic.CHEBYSHEV);
+    }
+
+    /**
+     * Creates the algorithm with Chebyshev heuristics bound to the field.
+     * @param field The game field.
+     */
+    public AStar(Field field) {
+        this(field, Heuristic.CHEBYSHEV);
+    }
+
+    /**
+     * Creates the algorithm with the given heuristics, e.g. LandmarkHeuristic shared by all searches on the field.
+     * The heuristics must be made for the fields passed to the calls.
+     * @param field The game field, null if the algorithm is not bound to a field.
+     * @param heuristic Estimation of the distance to the target.
+     */
+    public AStar(Field field, Heuristic heuristic) {
+        super(field);
+        this.heuristic = heuristic;
     }
 
     /**
      * Finding optimal (minimal) path using A* algorithm.
+     * Costs, links to previous cells and OPEN are kept in the workspace borrowed from the pool
+     * (see SearchWorkspace), so the search does not allocate anything for the cells of the field.
+     * OPEN polls cells with equal priority in the order of the original PriorityQueue (see OpenQueue),
+     * so the paths and the number of expanded cells are the same as before.
+     * @param field The game field.
      * @param harry Starting point.
      * @param exit End point. It is necessary to find a book first.
-     * @return Array with a path to end point.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
      * @throws NoPathException If there is no path or algorithm cannot find it.
      * @throws IncorrectDataException If something went wrong.
      */
     @Override
-    public Path[] getMinimalPath(Harry harry, Exit exit) throws NoPathException, IncorrectDataException {
-        ArrayList<Path> res = new ArrayList<>();
+    public void getMinimalPath(Field field, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException, IncorrectDataException {
+        SearchWorkspace ws = SearchWorkspace.borrow(field);
+        try {
+            search(ws, harry, exit, sink, statistics);
+        } finally {
+            ws.release();
+        }
+    }
 
-        PriorityQueue<PathObj> open = new PriorityQueue<>();
-        ArrayList<PathObj> closed = new ArrayList<>();
-        ArrayList<PathObj> blocked = new ArrayList<>();
+    /**
+     * Runs the search in the workspace.
+     * @param ws Workspace of the search prepared for the field.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
+     * @throws NoPathException If there is no path or algorithm cannot find it.
+     */
+    private void search(SearchWorkspace ws, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException {
+        statistics.startPhase();
 
-        open.add(new PathObj(harry, 0, false, null));
-        PathObj[][] map = new PathObj[table.length][table[0].length];
-        for (int x = 0; x < map.length; x++) {
-            for (int y = 0; y < map[0].length; y++) {
-                map[y][x] = new PathObj(new Harry(x, y, harry.getScenario()), Integer.MAX_VALUE,
-                        table[y][x] instanceof Cloak, null);
-            }
-        }
-        map[harry.y][harry.x] = open.peek();
+        // Cells are indexed by y * width + x
+        Field field = ws.field();
+        int width = field.getWidth(), height = field.getHeight();
+        OpenQueue open = ws.queue();
+        IntStack toBook = ws.path();        // cells of the path to the book, the costs are forgotten after the book.
 
-        Book book = null;
-        Cloak cloak = null;
+        int start = harry.y * width + harry.x;
+        ws.set(start, 0, -1, false);
+        open.push(start, getKey(ws, start, -1));
+        statistics.pushed();
+        Stencil visibility = harry.getVisibilityStencil();
+
+        int book = -1, cloak = -1;          // found cells of the book and of the cloak.
+        int target = -1;                    // target of the heuristics, -1 while the book is not seen.
         boolean needBook = true;
 
         while (!open.isEmpty()) {
-            PathObj curPath = open.poll();
+            int cur = open.poll();
+            statistics.expanded();
+            int curX = cur % width, curY = cur / width;
 
             // Check current position
-            if (needBook && table[curPath.harry.y][curPath.harry.x] instanceof Book) {
-                if (book == null)
-                    book = (Book) table[curPath.harry.y][curPath.harry.x];
-                res.addAll(getPathToTarget(curPath.prev));
-                for (int x = 0; x < map.length; x++) {
-                    for (int y = 0; y < map.length; y++) {
-                        if (curPath.harry.y != y || curPath.harry.x != x) {
-                            map[y][x].gCost = Integer.MAX_VALUE;
-                            map[y][x].prev = null;
-                            map[y][x].hasCloak = table[y][x] instanceof Cloak;
-                            map[y][x].hCost = getHeuristic(x, y, exit);
-                        }
-                    }
-                }
-                for (PathObj o : blocked)
-                    map[o.harry.y][o.harry.x].gCost = Integer.MIN_VALUE;
-                map[curPath.harry.y][curPath.harry.x].gCost = 0;
-                map[curPath.harry.y][curPath.harry.x].prev = null;
-                map[curPath.harry.y][curPath.harry.x].hCost = getHeuristic(curPath.harry.x, curPath.harry.y, exit);
+            if (needBook && field.is(cur, Field.BOOK)) {
+                if (book < 0)
+                    book = cur;
+                for (int temp = ws.parent(cur); temp >= 0; temp = ws.parent(temp))
+                    toBook.push(temp);
+                // Costs of all cells except known blocked ones are reset, the heuristics leads to the exit
+                boolean hasCloak = hasCloak(ws, cur);
+                ws.forgetCosts();
+                ws.forgetEstimates();
+                ws.set(cur, 0, -1, hasCloak);
+                target = exit.y * width + exit.x;
                 open.clear();
-                closed.clear();
+                ws.forgetClosed();
                 needBook = false;
-            } else if (!needBook && table[curPath.harry.y][curPath.harry.x] instanceof Exit) {
-                res.addAll(getPathToTarget(curPath));
-                return res.toArray(new Path[0]);
-            } else if (table[curPath.harry.y][curPath.harry.x] instanceof Cloak) {
-                if (cloak == null)
-                    cloak = (Cloak) table[curPath.harry.y][curPath.harry.x];
-                curPath.hasCloak = true;
+                statistics.bookFound();
+                statistics.endPhase(SearchStatistics.PHASE_BOOK);
+            } else if (!needBook && field.is(cur, Field.EXIT)) {
+                writePath(sink, width, toBook, ws, cur);
+                statistics.endPhase(SearchStatistics.PHASE_EXIT);
+                return;
+            } else if (field.is(cur, Field.CLOAK)) {
+                if (cloak < 0)
+                    cloak = cur;
+                if (!hasCloak(ws, cur))
+                    statistics.cloakPicked();
+                set(ws, cur, ws.cost(cur), ws.parent(cur), true, target);
             }
 
-            closed.add(curPath);
+            ws.close(cur);
+            boolean curCloak = hasCloak(ws, cur);
 
-            // Fill map according to what curPath can see
-            for (Harry zone : curPath.harry.getVisibilityZone()) {
-                if (!open.contains(map[zone.y][zone.x]) && !closed.contains(map[zone.y][zone.x])
-                        && (table[zone.y][zone.x] instanceof BadAgent
-                        || !curPath.hasCloak && table[zone.y][zone.x] instanceof BadAgent.VisibilityZone)) {
-                    map[zone.y][zone.x].gCost = Integer.MIN_VALUE;
-                    map[zone.y][zone.x].prev = null;
-                    map[zone.y][zone.x].hasCloak = false;
-                    blocked.add(map[zone.y][zone.x]);
+            // Fill map according to what Harry can see from the current cell
+            for (int v = 0; v < visibility.size(); v++) {
+                int id = visibility.cell(v, curX, curY, width, height);
+                if (id < 0) continue;
+                if (!open.contains(id) && !ws.isClosed(id) && field.isBlocked(id, curCloak)) {
+                    set(ws, id, Integer.MIN_VALUE, -1, false, target);
+                    ws.block(id);
                     continue;
                 }
-                if (!open.contains(map[zone.y][zone.x]) && !closed.contains(map[zone.y][zone.x])) {
-                    map[zone.y][zone.x].gCost = Integer.MAX_VALUE;
-                    map[zone.y][zone.x].prev = null;
-                    map[zone.y][zone.x].hasCloak = curPath.hasCloak;
-                    open.add(map[zone.y][zone.x]);
+                if (!open.contains(id) && !ws.isClosed(id)) {
+                    set(ws, id, Integer.MAX_VALUE, -1, curCloak, target);
+                    open.push(id, getKey(ws, id, target));
+                    statistics.pushed();
                 }
-                if (open.contains(map[zone.y][zone.x]) && !closed.contains(map[zone.y][zone.x])) {
-                    for (Harry n : new Harry(zone.x, zone.y, 1).getVisibilityZone()) {
-                        if (closed.contains(map[n.y][n.x])
-                                && map[n.y][n.x].getCost() + 1 < map[zone.y][zone.x].getCost()) {
-                            map[zone.y][zone.x].gCost = map[n.y][n.x].gCost + 1;
-                            map[zone.y][zone.x].prev = map[n.y][n.x];
-                            map[zone.y][zone.x].hasCloak = map[n.y][n.x].hasCloak;
-                            updateQueue(open, map[zone.y][zone.x]); // Update specific value in OPEN
+                if (open.contains(id) && !ws.isClosed(id)) {
+                    for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                        int nId = Stencil.MOVEMENT.cell(m, id % width, id / width, width, height);
+                        if (nId < 0) continue;
+                        if (ws.isClosed(nId) && getCost(ws, nId, target) + 1 < getCost(ws, id, target)) {
+                            set(ws, id, ws.cost(nId) + 1, nId, hasCloak(ws, nId), target);
+                            open.update(id, getKey(ws, id, target)); // Update specific value in OPEN
+                            statistics.updated();
                         }
                     }
                 }
-                if (book == null && table[zone.y][zone.x] instanceof Book) {
-                    book = (Book) table[zone.y][zone.x];
-                    for (int x = 0; x < map.length; x++) {
-                        for (int y = 0; y < map.length; y++) {
-                            map[y][x].hCost = getHeuristic(x, y, book);
-                        }
-                    }
-                    ArrayList<PathObj> tempList = new ArrayList<>(open);
-                    open.clear();
-                    open.addAll(tempList);
-                } else if (cloak == null && table[zone.y][zone.x] instanceof Cloak) {
-                    cloak = (Cloak) table[zone.y][zone.x];
+                if (book < 0 && field.is(id, Field.BOOK)) {
+                    book = id;
+                    target = id;
+                    ws.forgetEstimates();
+                    int bookTarget = target;
+                    open.rebuild(i -> getKey(ws, i, bookTarget));
+                } else if (cloak < 0 && field.is(id, Field.CLOAK)) {
+                    cloak = id;
                 }
             }
 
             // Get neighboring cells to movement
-            for (Harry zone : new Harry(curPath.harry.x, curPath.harry.y, 1).getVisibilityZone()) {
-                PathObj x = map[zone.y][zone.x];
-                if (!blocked.contains(x) && !closed.contains(x) && open.contains(x)) {
-                    if (curPath.getCost() + 1 < x.getCost()) {
-                        x.gCost = curPath.gCost + 1;
-                        x.hasCloak = curPath.hasCloak;
-                        x.prev = curPath;
-                        updateQueue(open, x);   // Update specific value in OPEN
+            for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                int id = Stencil.MOVEMENT.cell(m, curX, curY, width, height);
+                if (id < 0) continue;
+                if (!ws.isBlocked(id) && !ws.isClosed(id) && open.contains(id)) {
+                    if (getCost(ws, cur, target) + 1 < getCost(ws, id, target)) {
+                        set(ws, id, ws.cost(cur) + 1, cur, curCloak, target);
+                        open.update(id, getKey(ws, id, target));   // Update specific value in OPEN
+                        statistics.updated();
                     }
-                } else if (blocked.contains(x) && !closed.contains(x) && curPath.hasCloak
-                        && table[x.harry.y][x.harry.x] instanceof BadAgent.VisibilityZone) {
-                    blocked.remove(x);
-                    x.gCost = curPath.gCost + 1;
-                    x.hasCloak = true;
-                    x.prev = curPath;
-                    open.add(x);
+                } else if (ws.isBlocked(id) && !ws.isClosed(id) && curCloak
+                        && field.is(id, Field.PERCEPTION)) {
+                    ws.unblock(id);
+                    set(ws, id, ws.cost(cur) + 1, cur, true, target);
+                    open.push(id, getKey(ws, id, target));
+                    statistics.pushed();
                 }
             }
             // Blind (Smart) move
             // If the next move is unknown
-            if (!open.isEmpty() && open.peek().gCost == Integer.MAX_VALUE) {
-                Harry nextMove = blindStep(curPath.harry, map);
-                if (nextMove != null) {
-                    map[nextMove.y][nextMove.x].gCost = curPath.gCost + 1;
-                    map[nextMove.y][nextMove.x].hasCloak = curPath.hasCloak;
-                    map[nextMove.y][nextMove.x].prev = curPath;
-                    open.add(map[nextMove.y][nextMove.x]);
+            if (!open.isEmpty() && ws.cost(open.peek()) == Integer.MAX_VALUE) {
+                statistics.blindStep();
+                int nextMove = blindStep(curX, curY, width, height, ws);
+                if (nextMove >= 0) {
+                    set(ws, nextMove, ws.cost(cur) + 1, cur, curCloak, target);
+                    open.push(nextMove, getKey(ws, nextMove, target));
+                    statistics.pushed();
                 }
             }
         }
+        statistics.endPhase(needBook ? SearchStatistics.PHASE_BOOK : SearchStatistics.PHASE_EXIT);
         throw new NoPathException();
     }
 
     /**
-     * Implementation for Euclid heuristics.
-     * @param x x-coordinate of the current position.
-     * @param y y-coordinate of the current position.
-     * @param target Coordinates of the target position.
-     * @return Euclidean distance from current to target position.
+     * Writes the path to the book followed by the path from the book to the exit.
+     * @param sink Receiver of the path.
+     * @param width Width of the field.
+     * @param toBook Cells of the path to the book in reverse order (without the book).
+     * @param ws Workspace of the search, the path from the book is restored by links to previous cells.
+     * @param toExit Cell of the exit.
      */
-    private int getHeuristic(int x, int y, Agent target) {
-        return (int) Math.sqrt(Math.pow(x-target.x, 2) + Math.pow(y-target.y, 2));
+    private static void writePath(PathSink sink, int width, IntStack toBook, SearchWorkspace ws, int toExit) {
+        int length = toBook.size();
+        for (int temp = toExit; temp >= 0; temp = ws.parent(temp))
+            length++;
+        sink.begin(length, width);
+        for (int i = 0; i < toBook.size(); i++)
+            sink.set(toBook.size() - 1 - i, toBook.get(i));
+        int end = length;
+        for (int temp = toExit; temp >= 0; temp = ws.parent(temp))
+            sink.set(--end, temp);
     }
 
     /**
-     * Updates the particular element of priority queue.
-     * @param open Priority queue where to update the given element.
-     * @param newObj Element of the PQ to update.
+     * Checks if Harry has invisibility cloak in the cell. Cells without cost have it only if the cloak lies there.
+     * @param ws Workspace of the search.
+     * @param cell Index of the cell.
+     * @return true if Harry has invisibility cloak in the cell.
      */
-    private void updateQueue(PriorityQueue<PathObj> open, PathObj newObj) {
-        List<PathObj> newQueue = new ArrayList<>();
-        PathObj temp;
-        while (!open.isEmpty()) {
-            temp = open.poll();
-            newQueue.add(temp);
-            if (temp.harry == newObj.harry)
-                break;
-        }
-        open.addAll(newQueue);
+    private static boolean hasCloak(SearchWorkspace ws, int cell) {
+        return ws.hasCloak(cell, ws.field().is(cell, Field.CLOAK));
     }
 
-    @Override
-    public String toString() {
-        return "A Star";
+    /**
+     * Writes the cost of the cell. The heuristics is fixed before the cloak of the cell is changed,
+     * as it is estimated with the cloak which the cell had when the target was changed.
+     * @param ws Workspace of the search.
+     * @param cell Index of the cell.
+     * @param cost Movement cost to the cell.
+     * @param parent Previous cell, -1 if there is no previous cell.
+     * @param hasCloak Does Harry have invisibility cloak in the cell.
+     * @param target Target of the heuristics, -1 if it is unknown.
+     */
+    private void set(SearchWorkspace ws, int cell, int cost, int parent, boolean hasCloak, int target) {
+        if (!ws.hasEstimate(cell))
+            ws.setEstimate(cell, getHeuristic(ws, cell, target));
+        ws.set(cell, cost, parent, hasCloak);
     }
 
     /**
-     * Represents the object where Harry can move on.
+     * Estimates the distance from the cell to the target using the heuristics of the algorithm.
+     * The estimation is made on the first use after the target is changed.
+     * @param ws Workspace of the search.
+     * @param cell Index of the cell.
+     * @param target Index of the target cell, -1 if it is unknown.
+     * @return estimated distance from the cell to the target, 0 if the target is unknown.
      */
-    private static class PathObj extends MapObj implements Comparable<PathObj> {
-        int hCost;          // Heuristics cost.
-        Harry harry;        // Object to collect coordinates and see neighbors.
-        boolean hasCloak;   // Current state of the existence of invisibility cloak.
-
-        public PathObj(Harry harry, int cost, boolean hasCloak, PathObj prev) {
-            super(cost, prev);
-            this.harry = harry;
-            this.hCost = 0;
-            this.hasCloak = hasCloak;
-        }
-
-        /**
-         * Returns the cost for this cell.
-         * @return the cost for this cell.
-         */
-        public int getCost() {
-            long val = (long) gCost + (long) hCost;
-            if (val >= Integer.MAX_VALUE) return Integer.MAX_VALUE;
-            if (val <= Integer.MIN_VALUE) return Integer.MIN_VALUE;
-            return (int) val;
-        }
-
-        /**
-         * Returns x-coordinate of this cell.
-         * @return x-coordinate of this cell.
-         */
-        @Override
-        protected int getX() {
-            return this.harry.x;
-        }
+    private int getHeuristic(SearchWorkspace ws, int cell, int target) {
+        if (ws.hasEstimate(cell))
+            return ws.estimate(cell);
+        if (target < 0)
+            return 0;
+        int width = ws.field().getWidth();
+        return heuristic.estimate(cell % width, cell / width, target % width, target / width, hasCloak(ws, cell));
+    }
 
-        /**
-         * Returns y-coordinate of this cell.
-         * @return y-coordinate of this cell.
-         */
-        @Override
-        protected int getY() {
-            return this.harry.y;
-        }
+    /**
+     * Returns the total cost (movement cost and heuristics) of the cell.
+     * @param ws Workspace of the search.
+     * @param cell Index of the cell.
+     * @param target Index of the target cell, -1 if it is unknown.
+     * @return the total cost limited by the range of int.
+     */
+    private int getCost(SearchWorkspace ws, int cell, int target) {
+        long val = (long) ws.cost(cell) + (long) getHeuristic(ws, cell, target);
+        if (val >= Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        if (val <= Integer.MIN_VALUE) return Integer.MIN_VALUE;
+        return (int) val;
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            PathObj pathObj = (PathObj) o;
-            return harry.x == pathObj.harry.x && harry.y == pathObj.harry.y;
-        }
+    /**
+     * Returns the key of the cell in the OPEN heap.
+     * Cells are ordered by total cost, unknown cells (infinite distance) are ordered by heuristics.
+     * @param ws Workspace of the search.
+     * @param cell Index of the cell.
+     * @param target Index of the target cell, -1 if it is unknown.
+     * @return the key of the cell in the OPEN heap.
+     */
+    private long getKey(SearchWorkspace ws, int cell, int target) {
+        int tieBreak = ws.cost(cell) == Integer.MAX_VALUE ? getHeuristic(ws, cell, target) : 0;
+        return ((long) getCost(ws, cell, target) << 32) | (tieBreak & 0xFFFFFFFFL);
+    }
 
-        /**
-         * Compare 2 objects to distinguish them in priority queue.
-         * @param pathObj Object to compare with.
-         * @return -1 if the current object more costly (in terms of priority queue / min heap),
-         *          1 if the current object less costly,
-         *          0 if object are equally costly.
-         */
-        @Override
-        public int compareTo(PathObj pathObj) {
-            if (this.gCost == pathObj.gCost)
-                return this.hCost - pathObj.hCost;
-            return Double.compare(this.getCost(), pathObj.getCost());
-        }
+    /**
+     * Returns the name of the algorithm, the heuristics is added if it is not Chebyshev.
+     * @return the name of the algorithm.
+     */
+    @Override
+    public String toString() {
+        return heuristic == Heuristic.CHEBYSHEV ? "A Star" : "A Star (" + heuristic + ")";
     }
 }
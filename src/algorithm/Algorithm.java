@@ -3,140 +3,205 @@ package algorithm;
 import agents.Exit;
 import agents.Harry;
 import agents.Path;
-import game.Game;
-
-import java.util.ArrayList;
-import java.util.Collections;
+import game.Field;
 
 /**
  * Base class for algorithms.
+ * The field and the counters are passed to each call, and the state of the search is kept in local variables
+ * or in a workspace borrowed from the pool, so one instance can solve different fields from many threads at once.
+ * The field must not be changed during the call. The algorithm can also be bound to a field
+ * for the calls without the field (e.g. Game.play()).
  */
 public abstract class Algorithm {
     /**
-     * Returns a path to exit with book.
+     * Masks of the known bad cells around Harry (see blindStep) which are counted for each direction.
+     */
+    private static final int UP = 0x007, DOWN = 0x038, RIGHT = 0x1C0, LEFT = 0xE00;
+    private static final int UP_LEFT = 0xC03, UP_RIGHT = 0x186, DOWN_LEFT = 0x618, DOWN_RIGHT = 0x0F0;
+
+    /**
+     * Field of the calls without the field, null if the algorithm is not bound to a field.
+     */
+    private final Field field;
+
+    /**
+     * Creates the algorithm which is not bound to a field, the field is passed to each call.
+     */
+    protected Algorithm() {
+        this(null);
+    }
+
+    /**
+     * Creates the algorithm bound to the field.
+     * @param field The game field for the calls without the field.
+     */
+    protected Algorithm(Field field) {
+        this.field = field;
+    }
+
+    /**
+     * Finds a path to exit with book on the field and writes it into the sink.
+     * @param field The game field, it must not be changed during the call.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the cells of the path, e.g. reused PackedPath.
+     * @param statistics Counters of the search, SearchStatistics.NONE to disable counting.
+     * @throws NoPathException If there is no path from start to the end.
+     * @throws IncorrectDataException If something went wrong.
+     */
+    public abstract void getMinimalPath(Field field, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException, IncorrectDataException;
+
+    /**
+     * Returns a path to exit with book on the field, nothing is counted.
+     * @param field The game field, it must not be changed during the call.
      * @param harry Starting point.
      * @param exit End point. It is necessary to find a book first.
      * @return Array with a path to end point.
      * @throws NoPathException If there is no path from start to the end.
      * @throws IncorrectDataException If something went wrong.
      */
-    public abstract Path[] getMinimalPath(Harry harry, Exit exit) throws NoPathException, IncorrectDataException;
+    public Path[] getMinimalPath(Field field, Harry harry, Exit exit) throws NoPathException, IncorrectDataException {
+        PackedPath path = new PackedPath();
+        getMinimalPath(field, harry, exit, path, SearchStatistics.NONE);
+        return path.toArray();
+    }
 
     /**
-     * Represents a blind step using priority.
-     * @param curPath Current position of the Harry.
-     * @param map Known objects on the field.
-     * @return The next movement for the Harry.
+     * Finds a path to exit with book on the bound field and writes it into the sink, nothing is counted.
+     * The counters are passed only to the call with the field, so the shared algorithm has no mutable state.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the cells of the path, e.g. reused PackedPath.
+     * @throws NoPathException If there is no path from start to the end.
+     * @throws IncorrectDataException If the algorithm is not bound to a field or something went wrong.
      */
-    protected Harry blindStep(Harry curPath, MapObj[][] map) {
-        // Calculating priority for next movement
-        int up = 0, ur = 0, r = 0, dr = 0, down = 0, dl = 0, l = 0, ul = 0;
-        for (int x = curPath.x-1; x <= curPath.x+1; x++) {
-            if (x < 0 || x >= Game.SIZE)
-                continue;
-            // Up
-            if (curPath.y+2 < Game.SIZE && map[curPath.y+2][x] != null
-                    && map[curPath.y+2][x].gCost < 0) {
-                if (x == curPath.x-1) { up++; ul++; }
-                else if (x == curPath.x) { up++; ul++; ur++; }
-                else { up++; ur++; }
-            }
-            // Down
-            if (curPath.y-2 >= 0 && map[curPath.y-2][x] != null
-                    && map[curPath.y-2][x].gCost < 0) {
-                if (x == curPath.x-1) { down++; dl++; }
-                else if (x == curPath.x) { down++; dl++; dr++; }
-                else { down++; dr++; }
-            }
-        }
-        for (int y = curPath.y-1; y <= curPath.y+1; y++) {
-            if (y < 0 || y >= Game.SIZE)
-                continue;
-            // Right
-            if (curPath.x+2 < Game.SIZE && map[y][curPath.x+2] != null
-                    && map[y][curPath.x+2].gCost < 0) {
-                if (y == curPath.y-1) { r++; dr++; }
-                else if (y == curPath.y) { r++; ur++; dr++; }
-                else { r++; ur++; }
-            }
-            // Left
-            if (curPath.x-2 >= 0 && map[y][curPath.x-2] != null
-                    && map[y][curPath.x-2].gCost < 0) {
-                if (y == curPath.y-1) { l++; dl++; }
-                else if (y == curPath.y) { l++; ul++; dl++; }
-                else { l++; ul++; }
-            }
+    public void getMinimalPath(Harry harry, Exit exit, PathSink sink) throws NoPathException, IncorrectDataException {
+        if (field == null)
+            throw new IncorrectDataException(this + " is not bound to a field, the field must be passed to the call.");
+        getMinimalPath(field, harry, exit, sink, SearchStatistics.NONE);
+    }
+
+    /**
+     * Returns a path to exit with book on the bound field, nothing is counted.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @return Array with a path to end point.
+     * @throws NoPathException If there is no path from start to the end.
+     * @throws IncorrectDataException If the algorithm is not bound to a field or something went wrong.
+     */
+    public Path[] getMinimalPath(Harry harry, Exit exit) throws NoPathException, IncorrectDataException {
+        PackedPath path = new PackedPath();
+        getMinimalPath(harry, exit, path);
+        return path.toArray();
+    }
+
+    /**
+     * Returns the field of the calls without the field.
+     * @return the bound field, null if the algorithm is not bound to a field.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Represents a blind step using priority on the field where costs of the cells are kept by the search.
+     * @param cx x-coordinate of the current position of the Harry.
+     * @param cy y-coordinate of the current position of the Harry.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @param costs Costs of the known cells, Integer.MAX_VALUE for unknown cells.
+     * @return Index of the cell (y * width + x) for the next movement of the Harry, -1 if there is no movement.
+     */
+    protected int blindStep(int cx, int cy, int width, int height, CostMap costs) {
+        // Known bad cells on distance 2 from Harry packed into 12 bits:
+        // 0-2 top row, 3-5 bottom row (x = cx-1..cx+1), 6-8 right column, 9-11 left column (y = cy-1..cy+1)
+        int bad = 0;
+        for (int i = 0; i < 3; i++) {
+            if (isKnownBad(costs, width, height, cx - 1 + i, cy + 2)) bad |= 1 << i;
+            if (isKnownBad(costs, width, height, cx - 1 + i, cy - 2)) bad |= 1 << 3 + i;
+            if (isKnownBad(costs, width, height, cx + 2, cy - 1 + i)) bad |= 1 << 6 + i;
+            if (isKnownBad(costs, width, height, cx - 2, cy - 1 + i)) bad |= 1 << 9 + i;
         }
+        // Calculating priority for next movement
+        int up = Integer.bitCount(bad & UP), ur = Integer.bitCount(bad & UP_RIGHT);
+        int r = Integer.bitCount(bad & RIGHT), dr = Integer.bitCount(bad & DOWN_RIGHT);
+        int down = Integer.bitCount(bad & DOWN), dl = Integer.bitCount(bad & DOWN_LEFT);
+        int l = Integer.bitCount(bad & LEFT), ul = Integer.bitCount(bad & UP_LEFT);
         // Remove unable steps
-        if (curPath.x-1 < 0) {
+        if (cx-1 < 0) {
             l = Integer.MAX_VALUE;
             ul = Integer.MAX_VALUE;
             dl = Integer.MAX_VALUE;
         }
-        if (curPath.x+1 >= Game.SIZE) {
+        if (cx+1 >= width) {
             r = Integer.MAX_VALUE;
             ur = Integer.MAX_VALUE;
             dr = Integer.MAX_VALUE;
         }
-        if (curPath.y-1 < 0) {
+        if (cy-1 < 0) {
             down = Integer.MAX_VALUE;
             dl = Integer.MAX_VALUE;
             dr = Integer.MAX_VALUE;
         }
-        if (curPath.y+1 >= Game.SIZE) {
+        if (cy+1 >= height) {
             up = Integer.MAX_VALUE;
             ul = Integer.MAX_VALUE;
             ur = Integer.MAX_VALUE;
         }
         // Make a movement
-        try {
-            if (checkMin(up, up, l, r, down, dl, dr, ul, ur) && curPath.y + 1 < Game.SIZE) {
-                if (map[curPath.y + 1][curPath.x] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y + 1][curPath.x].gCost)
-                    return null;
-                return new Harry(curPath.x, curPath.y + 1, curPath.getScenario());
-            } else if (checkMin(ur, up, l, r, down, dl, dr, ul, ur)
-                    && curPath.y + 1 < Game.SIZE && curPath.x + 1 < Game.SIZE) {
-                if (map[curPath.y + 1][curPath.x + 1] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y + 1][curPath.x + 1].gCost)
-                    return null;
-                return new Harry(curPath.x + 1, curPath.y + 1, curPath.getScenario());
-            } else if (checkMin(r, up, l, r, down, dl, dr, ul, ur) && curPath.x + 1 < Game.SIZE) {
-                if (map[curPath.y][curPath.x + 1] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y][curPath.x + 1].gCost)
-                    return null;
-                return new Harry(curPath.x + 1, curPath.y, curPath.getScenario());
-            } else if (checkMin(dr, up, l, r, down, dl, dr, ul, ur)
-                    && curPath.y - 1 >= 0 && curPath.x + 1 < Game.SIZE) {
-                if (map[curPath.y - 1][curPath.x + 1] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y - 1][curPath.x + 1].gCost)
-                    return null;
-                return new Harry(curPath.x + 1, curPath.y - 1, curPath.getScenario());
-            } else if (checkMin(down, up, l, r, down, dl, dr, ul, ur) && curPath.y - 1 >= 0) {
-                if (map[curPath.y - 1][curPath.x] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y - 1][curPath.x].gCost)
-                    return null;
-                return new Harry(curPath.x, curPath.y - 1, curPath.getScenario());
-            } else if (checkMin(dl, up, l, r, down, dl, dr, ul, ur)
-                    && curPath.y - 1 >= 0 && curPath.x - 1 >= 0) {
-                if (map[curPath.y - 1][curPath.x - 1] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y - 1][curPath.x - 1].gCost)
-                    return null;
-                return new Harry(curPath.x - 1, curPath.y - 1, curPath.getScenario());
-            } else if (checkMin(l, up, l, r, down, dl, dr, ul, ur) && curPath.x - 1 >= 0) {
-                if (map[curPath.y][curPath.x - 1] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y][curPath.x - 1].gCost)
-                    return null;
-                return new Harry(curPath.x - 1, curPath.y, curPath.getScenario());
-            } else if (checkMin(ul, up, l, r, down, dl, dr, ul, ur)
-                    && curPath.y + 1 < Game.SIZE && curPath.x - 1 >= 0) {
-                if (map[curPath.y + 1][curPath.x - 1] != null
-                        && map[curPath.y][curPath.x].gCost + 1 > map[curPath.y + 1][curPath.x - 1].gCost)
-                    return null;
-                return new Harry(curPath.x - 1, curPath.y + 1, curPath.getScenario());
-            }
-        } catch (IncorrectDataException ignored) {}
-        return null;
+        if (checkMin(up, up, l, r, down, dl, dr, ul, ur) && cy + 1 < height) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx, cy + 1))
+                return -1;
+            return (cy + 1) * width + cx;
+        } else if (checkMin(ur, up, l, r, down, dl, dr, ul, ur)
+                && cy + 1 < height && cx + 1 < width) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx + 1, cy + 1))
+                return -1;
+            return (cy + 1) * width + cx + 1;
+        } else if (checkMin(r, up, l, r, down, dl, dr, ul, ur) && cx + 1 < width) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx + 1, cy))
+                return -1;
+            return cy * width + cx + 1;
+        } else if (checkMin(dr, up, l, r, down, dl, dr, ul, ur)
+                && cy - 1 >= 0 && cx + 1 < width) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx + 1, cy - 1))
+                return -1;
+            return (cy - 1) * width + cx + 1;
+        } else if (checkMin(down, up, l, r, down, dl, dr, ul, ur) && cy - 1 >= 0) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx, cy - 1))
+                return -1;
+            return (cy - 1) * width + cx;
+        } else if (checkMin(dl, up, l, r, down, dl, dr, ul, ur)
+                && cy - 1 >= 0 && cx - 1 >= 0) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx - 1, cy - 1))
+                return -1;
+            return (cy - 1) * width + cx - 1;
+        } else if (checkMin(l, up, l, r, down, dl, dr, ul, ur) && cx - 1 >= 0) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx - 1, cy))
+                return -1;
+            return cy * width + cx - 1;
+        } else if (checkMin(ul, up, l, r, down, dl, dr, ul, ur)
+                && cy + 1 < height && cx - 1 >= 0) {
+            if (costs.getCost(cx, cy) + 1 > costs.getCost(cx - 1, cy + 1))
+                return -1;
+            return (cy + 1) * width + cx - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Supporting function for the blind step.
+     * Checks if the cell is known as inspector or its perception zone.
+     * @param costs Costs of the known cells.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @param x x-coordinate of the cell.
+     * @param y y-coordinate of the cell.
+     * @return true if the cell is on the field and known as bad cell.
+     */
+    private static boolean isKnownBad(CostMap costs, int width, int height, int x, int y) {
+        return y >= 0 && y < height && x >= 0 && x < width && costs.getCost(x, y) < 0;
     }
 
     /**
@@ -158,50 +223,15 @@ public abstract class Algorithm {
     }
 
     /**
-     * Deconstruct a path to the cell using target cell.
-     * @param target Cell to which deconstruct a path.
-     * @return Path to target cell.
+     * Costs of the cells known by the search, used by blindStep().
      */
-    protected ArrayList<Path> getPathToTarget(MapObj target) {
-        ArrayList<Path> res = new ArrayList<>();
-        MapObj temp = target;
-        while (temp != null) {
-            res.add(new Path(temp.getX(), temp.getY()));
-            temp = temp.prev;
-        }
-        Collections.reverse(res);
-        return res;
-    }
-
-    /**
-     * Represents cells which the main character can see and step on.
-     */
-    protected abstract static class MapObj {
-        /**
-         * Movement cost to that cell.
-         */
-        int gCost;
-
-        /**
-         * Link to the previous cell from which to move on that cell.
-         */
-        MapObj prev;
-
-        protected MapObj(int cost, MapObj prev) {
-            this.gCost = cost;
-            this.prev = prev;
-        }
-
-        /**
-         * Returns x coordinate of the cell.
-         * @return x coordinate of the cell.
-         */
-        protected abstract int getX();
-
+    protected interface CostMap {
         /**
-         * Returns y coordinate of the cell.
-         * @return y coordinate of the cell.
+         * Returns the cost of the cell.
+         * @param x x-coordinate of the cell.
+         * @param y y-coordinate of the cell.
+         * @return movement cost to the cell, Integer.MIN_VALUE for known bad cell, Integer.MAX_VALUE for unknown cell.
          */
-        protected abstract int getY();
+        int getCost(int x, int y);
     }
 }
@@ -1,324 +1,558 @@
 package algorithm;
 
 import agents.*;
+import game.Field;
 
-import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Backtracking algorithm.
+ * The algorithm makes up to 5 passes: to the book, to the book with cloak, to the exit, to the exit with cloak,
+ * and to the exit with cloak from the book. Independent passes are launched on the executor:
+ * (to the book) -> (to the book with cloak || to the exit) -> (to the exit with cloak || from the book with cloak).
+ * Maps of the passes are layers of one borrowed workspace, the state of the cell in the pass is cell * 5 + layer.
+ * Each found path to a cell is the node of the path tree in the workspace, and the map keeps the cost
+ * and the last node of each cell, so the path which was continued from the cell is kept when the cell gets another.
  */
 public class Backtracking extends Algorithm {
-    private final Agent[][] table;  // copy of the game field.
-    private Book book;              // found book object.
-    private Cloak cloak;            // found invisibility cloak object.
-    private boolean hadCloak;       // did Harry use invisibility cloak on previous part of the algorithm.
-
-    public Backtracking(Agent[][] table) {
-        // Copy table to avoid changes in the initial map.
-        this.table = Arrays.copyOf(table, table.length);
-        for (int i = 0; i < table.length; i++) {
-            this.table[i] = Arrays.copyOf(table[i], table[i].length);
-        }
+    /**
+     * Layers of the workspace, one per pass.
+     */
+    private static final int TO_BOOK = 0, TO_BOOK_WITH_CLOAK = 1, TO_EXIT = 2, TO_EXIT_WITH_CLOAK = 3,
+            TO_EXIT_WITH_CLOAK_INITIALLY = 4, LAYERS = 5;
+    /**
+     * Flags of the node: all neighbours of the cell were checked with this cost,
+     * and the cell was explored having invisibility cloak.
+     */
+    private static final int EXPANDED = 1, EXPANDED_WITH_CLOAK = 2;
+
+    private final Executor executor;    // executor for the independent passes.
+
+    /**
+     * Creates the algorithm for any field which makes all passes in the calling thread.
+     */
+    public Backtracking() {
+        this(null, Runnable::run);
+    }
+
+    /**
+     * Creates the algorithm bound to the field which makes all passes in the calling thread.
+     * @param field The game field.
+     */
+    public Backtracking(Field field) {
+        this(field, Runnable::run);
+    }
+
+    /**
+     * Creates the algorithm which launches independent passes on the executor.
+     * @param field The game field, null if the algorithm is not bound to a field.
+     * @param executor Executor for the passes, e.g. ForkJoinPool.commonPool().
+     */
+    public Backtracking(Field field, Executor executor) {
+        super(field);
+        this.executor = executor;
     }
 
     /**
      * Finding optimal (minimal) path using Backtracking algorithm.
+     * @param field The game field.
      * @param mainHarry Starting point.
      * @param exit End point. It is necessary to find a book first.
-     * @return Array with an optimal path to end point.
+     * @param sink Receiver of the optimal path to end point.
+     * @param statistics Counters of the search.
      * @throws NoPathException If there is no path or algorithm cannot find it.
-     * @throws IncorrectDataException If something went wrong.
      */
     @Override
-    public Path[] getMinimalPath(Harry mainHarry, Exit exit) throws NoPathException, IncorrectDataException {
-        // To omit changes of the main object
-        Harry harry = new Harry(mainHarry.x, mainHarry.y, mainHarry.getScenario());
+    public void getMinimalPath(Field field, Harry mainHarry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException {
+        SearchWorkspace ws = SearchWorkspace.borrow(field, LAYERS);
+        try {
+            search(ws, mainHarry, exit, sink, statistics);
+        } catch (NoPathException e) {
+            ws.release();
+            throw e;
+        }
+        // After an unexpected error a pass may still work on the executor, so the workspace is not returned
+        ws.release();
+    }
+
+    /**
+     * Makes the passes in the workspace and writes the best of the found paths.
+     * All started passes are finished when the method returns or throws NoPathException.
+     * @param ws Workspace of the search, borrowed for the field.
+     * @param mainHarry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the optimal path to end point.
+     * @param statistics Counters of the search.
+     * @throws NoPathException If there is no path or algorithm cannot find it.
+     */
+    private void search(SearchWorkspace ws, Harry mainHarry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException {
+        // Current starting point
+        Field field = ws.field();
+        int x = mainHarry.x, y = mainHarry.y;
+        int width = field.getWidth();
+        int scenario = mainHarry.getScenario();
+        statistics.startPhase();
 
         // Find a path to book
-        PathObj[][] mapToBook = new PathObj[table.length][table[0].length];
-        PathObj[][] mapToExit = new PathObj[table.length][table[0].length];
-        PathObj[][] mapToBookWithCloak = new PathObj[table.length][table[0].length];
-        PathObj[][] mapToExitWithCloak = new PathObj[table.length][table[0].length];
-        PathObj[][] mapToExitWithCloakInitially = new PathObj[table.length][table[0].length];
-        mapToBook[harry.y][harry.x] = new PathObj(harry.x, harry.y, 0, null);
-
-        if (harry.getScenario() == 1)
-            backtracking(harry, mapToBook, false, true);
-        else if (harry.getScenario() == 2)
-            backtrackingFor2Scenario(harry, mapToBook, false, true);
-        boolean isCloakUsed = hadCloak;
+        Pass toBook = new Pass(ws, TO_BOOK, statistics, scenario, null, null);
+        toBook.set(field.index(x, y), 0, -1);
+        toBook.run(x, y, false, true);
+        boolean isCloakUsed = toBook.hadCloak;
+        Cloak cloak = toBook.cloak;
 
         // Find the solution using invisibility cloak
-        if (cloak != null && !isCloakUsed && mapToBook[cloak.y][cloak.x] != null) {
-            copyPathToCloak(mapToBook, mapToBookWithCloak);
-            if (harry.getScenario() == 1)
-                backtracking(new Harry(cloak.x, cloak.y, harry.getScenario()), mapToBookWithCloak, true, true);
-            else if (harry.getScenario() == 2)
-                backtrackingFor2Scenario(new Harry(cloak.x, cloak.y, harry.getScenario()), mapToBookWithCloak, true, true);
+        CompletableFuture<Pass> toBookWithCloak = null;
+        if (cloak != null && !isCloakUsed && toBook.has(field.index(cloak.x, cloak.y))) {
+            Pass pass = new Pass(ws, TO_BOOK_WITH_CLOAK, statistics, scenario, toBook.book, cloak);
+            copyPathToCloak(toBook, pass, cloak);
+            Cloak start = cloak;
+            toBookWithCloak = CompletableFuture.supplyAsync(() -> pass.run(start.x, start.y, true, true), executor);
         }
-        if (book == null)
+        Book book = toBook.book;
+        if (book == null && toBookWithCloak != null)
+            book = toBookWithCloak.join().book;
+        statistics.endPhase(SearchStatistics.PHASE_BOOK);
+        if (book == null) {
+            merge(statistics, toBook, toBookWithCloak == null ? null : toBookWithCloak.join());
             throw new NoPathException();
+        }
+        statistics.bookFound();
 
         // Find a path to exit
-        harry.x = book.x;
-        harry.y = book.y;
-        hadCloak = false;
-        mapToExit[harry.y][harry.x] = new PathObj(harry.x, harry.y, 0, null);
-        if (harry.getScenario() == 1)
-            backtracking(harry, mapToExit, isCloakUsed, false);
-        else if (harry.getScenario() == 2) {
-            copyBadCell(mapToBook, mapToExit);
-            backtrackingFor2Scenario(harry, mapToExit, isCloakUsed, false);
-        }
+        x = book.x;
+        y = book.y;
+        int bookCell = field.index(x, y), exitCell = field.index(exit.x, exit.y);
+        Pass toExit = new Pass(ws, TO_EXIT, statistics, scenario, book, cloak);
+        toExit.set(bookCell, 0, -1);
+        if (scenario == 2)
+            copyBadCell(toBook, toExit, cloak);
+        toExit.run(x, y, isCloakUsed, false);
+        cloak = toExit.cloak;
 
-        if (cloak != null && !isCloakUsed && !hadCloak && mapToExit[cloak.y][cloak.x] != null) {
-            copyPathToCloak(mapToExit, mapToExitWithCloak);
-            if (harry.getScenario() == 1)
-                backtracking(new Harry(cloak.x, cloak.y, harry.getScenario()), mapToExitWithCloak, true, false);
-            else if (harry.getScenario() == 2)
-                backtrackingFor2Scenario(new Harry(cloak.x, cloak.y, harry.getScenario()), mapToExitWithCloak, true, false);
-        }
-        if (mapToExit[exit.y][exit.x] == null && mapToExitWithCloak[exit.y][exit.x] == null) {
-            throw new NoPathException();
+        CompletableFuture<Pass> toExitWithCloak = null;
+        if (cloak != null && !isCloakUsed && toExit.has(field.index(cloak.x, cloak.y))) {
+            Pass pass = new Pass(ws, TO_EXIT_WITH_CLOAK, statistics, scenario, book, cloak);
+            copyPathToCloak(toExit, pass, cloak);
+            Cloak start = cloak;
+            toExitWithCloak = CompletableFuture.supplyAsync(() -> pass.run(start.x, start.y, true, false), executor);
         }
 
         // Use cloak while looking for the book
         if (isCloakUsed) {
-            ArrayList<Path> path = getPathToTarget(mapToBook[book.y][book.x].prev);
-            path.addAll(getPathToTarget(mapToExit[exit.y][exit.x]));
-            return path.toArray(new Path[0]);
+            merge(statistics, toBook, toExit);
+            if (!toExit.isReached(exitCell)) {
+                statistics.endPhase(SearchStatistics.PHASE_EXIT);
+                throw new NoPathException();
+            }
+            writePath(sink, width, ws, toBook.previous(bookCell), toExit.node(exitCell));
+            statistics.endPhase(SearchStatistics.PHASE_EXIT);
+            return;
         }
 
-        mapToExitWithCloakInitially[harry.y][harry.x] = new PathObj(harry.x, harry.y, 0, null);
-        if (harry.getScenario() == 1)
-            backtracking(harry, mapToExitWithCloakInitially, true, false);
-        else if (harry.getScenario() == 2) {
-            copyBadCell(mapToExit, mapToExitWithCloakInitially);
-            backtrackingFor2Scenario(harry, mapToExitWithCloakInitially, true, false);
+        // Put on cloak right after the book (calculated while the previous pass may still work)
+        Pass toExitWithCloakInitially = new Pass(ws, TO_EXIT_WITH_CLOAK_INITIALLY, statistics, scenario, book, cloak);
+        toExitWithCloakInitially.set(bookCell, 0, -1);
+        if (scenario == 2)
+            copyBadCell(toExit, toExitWithCloakInitially, cloak);
+        toExitWithCloakInitially.run(x, y, true, false);
+
+        Pass bookWithCloak = toBookWithCloak == null
+                ? new Pass(ws, TO_BOOK_WITH_CLOAK, statistics, scenario, book, cloak) : toBookWithCloak.join();
+        Pass exitWithCloak = toExitWithCloak == null
+                ? new Pass(ws, TO_EXIT_WITH_CLOAK, statistics, scenario, book, cloak) : toExitWithCloak.join();
+        merge(statistics, toBook, bookWithCloak, toExit, exitWithCloak, toExitWithCloakInitially);
+        if (!toExit.isReached(exitCell) && !exitWithCloak.isReached(exitCell)) {
+            statistics.endPhase(SearchStatistics.PHASE_EXIT);
+            throw new NoPathException();
         }
 
         // Use cloak while looking for the book
-        int costPP = mapToBookWithCloak[book.y][book.x] == null || mapToExitWithCloakInitially[exit.y][exit.x] == null
-                ? Integer.MAX_VALUE
-                : mapToBookWithCloak[book.y][book.x].gCost + mapToExitWithCloakInitially[exit.y][exit.x].gCost;
+        int costPP = getCost(bookWithCloak, toExitWithCloakInitially, bookCell, exitCell);
 
         // Use cloak while looking for the exit
-        int costNP = mapToExitWithCloak[exit.y][exit.x] == null || mapToBook[book.y][book.x] == null
-                ? Integer.MAX_VALUE
-                : mapToExitWithCloak[exit.y][exit.x].gCost + mapToBook[book.y][book.x].gCost;
+        int costNP = getCost(toBook, exitWithCloak, bookCell, exitCell);
 
         // Do not use cloak at all
-        int costNN = mapToExit[exit.y][exit.x] == null || mapToBook[book.y][book.x] == null
-                ? Integer.MAX_VALUE
-                : mapToBook[book.y][book.x].gCost + mapToExit[exit.y][exit.x].gCost;
-
-        if (costPP < costNP && costPP < costNN) {
-            ArrayList<Path> path = new ArrayList<>(getPathToTarget(mapToBookWithCloak[book.y][book.x].prev));
-            path.addAll(getPathToTarget(mapToExitWithCloakInitially[exit.y][exit.x]));
-            return path.toArray(new Path[0]);
-        } else if (costNP < costPP && costNP < costNN) {
-            ArrayList<Path> path = new ArrayList<>(getPathToTarget(mapToBook[book.y][book.x].prev));
-            path.addAll(getPathToTarget(mapToExitWithCloak[exit.y][exit.x]));
-            return path.toArray(new Path[0]);
+        int costNN = getCost(toBook, toExit, bookCell, exitCell);
+
+        statistics.endPhase(SearchStatistics.PHASE_EXIT);
+        if (costPP == Integer.MAX_VALUE && costNP == Integer.MAX_VALUE && costNN == Integer.MAX_VALUE) {
+            // The exit was reached only from the book found by another pass, so no variant has the whole path
+            throw new NoPathException();
         }
-        ArrayList<Path> path = new ArrayList<>(getPathToTarget(mapToBook[book.y][book.x].prev));
-        path.addAll(getPathToTarget(mapToExit[exit.y][exit.x]));
-        return path.toArray(new Path[0]);
+        if (costPP < costNP && costPP < costNN || costNN == Integer.MAX_VALUE && costPP <= costNP)
+            writePath(sink, width, ws, bookWithCloak.previous(bookCell), toExitWithCloakInitially.node(exitCell));
+        else if (costNP < costPP && costNP < costNN || costNN == Integer.MAX_VALUE)
+            writePath(sink, width, ws, toBook.previous(bookCell), exitWithCloak.node(exitCell));
+        else
+            writePath(sink, width, ws, toBook.previous(bookCell), toExit.node(exitCell));
     }
 
     /**
-     * Copies found bad agents and cloak from source to destination tables.
-     * Note: Bad agents are Mrs. Norris (Cat), Argus Filch (Filch), and their perception zone.
-     * @param src Source table that already contains information about found bad agents.
-     * @param dst Destination table where to copy information about found bad agents.
+     * Calculates the cost of the path which consists of the path to the book and the path from the book to the exit.
+     * @param toBook The pass to the book.
+     * @param toExit The pass from the book to the exit.
+     * @param book Index of the cell of the book.
+     * @param exit Index of the cell of the exit.
+     * @return the number of steps, Integer.MAX_VALUE if one of the parts was not found.
      */
-    private void copyBadCell(PathObj[][] src, PathObj[][] dst) {
-        for (int x = 0; x < src.length; x++) {
-            for (int y = 0; y < src[0].length; y++) {
-                if (src[y][x] != null && src[y][x].gCost < 0
-                        || cloak != null && x == cloak.x && y == cloak.y)
-                    dst[y][x] = src[y][x];
-            }
-        }
+    private static int getCost(Pass toBook, Pass toExit, int book, int exit) {
+        return toBook.isReached(book) && toExit.isReached(exit)
+                ? toBook.cost(book) + toExit.cost(exit) : Integer.MAX_VALUE;
     }
 
     /**
-     * Copies path to invisibility cloak from source to destination tables.
-     * After it copies found bad agents.
-     * Note: Bad agents are Mrs. Norris (Cat), Argus Filch (Filch), and their perception zone.
-     * @param src Source table from which to copy the path to the cloak and bad agents.
-     * @param dst Destination table to which to copy the path to the cloak and bad agents.
+     * Adds counters of the passes to the statistics of the call.
+     * @param statistics Counters of the call.
+     * @param passes Finished passes, null values are skipped.
      */
-    private void copyPathToCloak(PathObj[][] src, PathObj[][] dst) {
-        PathObj temp = src[cloak.y][cloak.x];
-        while (temp != null) {
-            dst[temp.y][temp.x] = temp;
-            temp = (PathObj) temp.prev;
+    private static void merge(SearchStatistics statistics, Pass... passes) {
+        for (Pass pass : passes) {
+            if (pass != null)
+                statistics.add(pass.passStatistics);
         }
-        copyBadCell(src, dst);
     }
 
     /**
-     * Represents current state of the algorithm.
-     * Used to avoid recursive calls.
+     * Copies found bad agents and cloak from source to destination passes.
+     * Note: Bad agents are Mrs. Norris (Cat), Argus Filch (Filch), and their perception zone.
+     * @param src Source pass that already contains information about found bad agents.
+     * @param dst Destination pass where to copy information about found bad agents.
+     * @param cloak Found invisibility cloak, null if it is not found.
      */
-    private static class State {
-        Harry harry;        // Coordinates of the current state
-        boolean hasCloak;   // Existence of invisibility cloak on current state
-
-        public State(Harry harry, boolean hasCloak) {
-            this.harry = harry;
-            this.hasCloak = hasCloak;
+    private static void copyBadCell(Pass src, Pass dst, Cloak cloak) {
+        int cloakCell = cloak == null ? -1 : src.field.index(cloak.x, cloak.y);
+        int cells = src.width * src.height;
+        for (int cell = 0; cell < cells; cell++) {
+            if (src.has(cell) && (src.cost(cell) < 0 || cell == cloakCell))
+                dst.put(src.node(cell));
         }
     }
 
     /**
-     * Backtracking for the second scenario.
-     * @param harry Position of the starting point.
-     * @param map Map to be filled with paths.
-     * @param hasC Has invisibility cloak or not.
-     * @param findBook true if needed to find book,
-     *                 false if needed to find exit.
-     * @throws IncorrectDataException If something went wrong.
+     * Copies path to invisibility cloak from source to destination passes.
+     * After it copies found bad agents.
+     * Note: Bad agents are Mrs. Norris (Cat), Argus Filch (Filch), and their perception zone.
+     * @param src Source pass from which to copy the path to the cloak and bad agents.
+     * @param dst Destination pass to which to copy the path to the cloak and bad agents.
+     * @param cloak Found invisibility cloak.
      */
-    private void backtrackingFor2Scenario(Harry harry, PathObj[][] map, boolean hasC, boolean findBook) throws IncorrectDataException {
-        Stack<State> states = new Stack<>();
-        states.push(new State(harry, hasC));
-
-        while (!states.empty()) {
-            Harry curPath = states.peek().harry;
-            boolean hasCloak = states.pop().hasCloak;
-
-            if (map[curPath.y][curPath.x] == null
-                    || map[curPath.y][curPath.x].gCost < 0
-                    || map[curPath.y][curPath.x].gCost == Integer.MAX_VALUE)
-                continue;
-
-            // Check current cell because we can "randomly" step on unknown cell
-            if (book == null && table[curPath.y][curPath.x] instanceof Book)
-                book = (Book) table[curPath.y][curPath.x];
-            else if (cloak == null && table[curPath.y][curPath.x] instanceof Cloak)
-                cloak = (Cloak) table[curPath.y][curPath.x];
-
-            // Update map according to visible zone
-            for (Harry zone : curPath.getVisibilityZone()) {
-                if (table[zone.y][zone.x] instanceof BadAgent
-                        || !hasCloak && table[zone.y][zone.x] instanceof BadAgent.VisibilityZone) {
-                    map[zone.y][zone.x] = new PathObj(zone.x, zone.y, Integer.MIN_VALUE, null);
-                } else if (book == null && table[zone.y][zone.x] instanceof Book) {
-                    book = (Book) table[zone.y][zone.x];
-                } else if (cloak == null && table[zone.y][zone.x] instanceof Cloak) {
-                    cloak = (Cloak) table[zone.y][zone.x];
-                }
-                if (map[zone.y][zone.x] == null) {
-                    map[zone.y][zone.x] = new PathObj(zone.x, zone.y, Integer.MAX_VALUE, null);
-                }
-            }
-            // Move on known cell
-            boolean cannotMove = true;
-            List<Harry> visibleZones = new Harry(curPath.x, curPath.y, 1).getVisibilityZone();
-            Collections.reverse(visibleZones);
-            for (Harry zone : visibleZones) {
-                if (map[zone.y][zone.x] != null && (map[zone.y][zone.x].gCost > map[curPath.y][curPath.x].gCost + 1
-                        && (hasCloak || !(table[zone.y][zone.x] instanceof BadAgent.VisibilityZone))
-                        || hasCloak && table[zone.y][zone.x] instanceof BadAgent.VisibilityZone
-                        && map[zone.y][zone.x].gCost == Integer.MIN_VALUE)
-                ) {
-                    cannotMove = false;
-                    map[zone.y][zone.x] = new PathObj(zone.x, zone.y, map[curPath.y][curPath.x].gCost + 1, map[curPath.y][curPath.x]);
-                    if (findBook && book != null && zone.x == book.x && zone.y == book.y) {
-                        hadCloak = hasCloak;
-                        continue;
-                    } else if (!findBook && table[zone.y][zone.x] instanceof Exit) {
-                        continue;
-                    }
-                    if (!hasCloak && cloak != null && zone.x == cloak.x && zone.y == cloak.y)
-                        states.push(new State(new Harry(zone.x, zone.y, curPath.getScenario()), true));
-                    else
-                        states.push(new State(new Harry(zone.x, zone.y, curPath.getScenario()), hasCloak));
-                } else if (map[zone.y][zone.x] == null)
-                    states.push(new State(new Harry(zone.x, zone.y, curPath.getScenario()), hasCloak));
-            }
-            // Move on unknown cell
-            if (cannotMove) {
-                Harry nextMove = blindStep(curPath, map);
-                if (nextMove != null) {
-                    map[nextMove.y][nextMove.x] = new PathObj(nextMove.x, nextMove.y,
-                            map[curPath.y][curPath.x].gCost + 1, map[curPath.y][curPath.x]);
-                    states.push(new State(nextMove, hasCloak));
-                }
-            }
-        }
+    private static void copyPathToCloak(Pass src, Pass dst, Cloak cloak) {
+        SearchWorkspace ws = src.ws;
+        for (int temp = src.node(src.field.index(cloak.x, cloak.y)); temp >= 0; temp = ws.nodePrevious(temp))
+            dst.put(temp);
+        copyBadCell(src, dst, cloak);
     }
 
     /**
-     * Backtracking for the first scenario. Standard backtracking algorithm.
-     * @param curPath Position of the starting point.
-     * @param map Map to be filled with paths.
-     * @param hasCloak Has invisibility cloak or not.
-     * @param findBook true if needed to find book,
-     *                 false if needed to find exit.
-     * @throws IncorrectDataException If something went wrong.
+     * Writes the path which consists of the path to the book and the path from the book to the exit,
+     * both are restored by links to previous nodes. A part may continue in the nodes of another pass.
+     * @param sink Receiver of the path.
+     * @param width Width of the field.
+     * @param ws Workspace of the search.
+     * @param toBook Node before the book, -1 if Harry starts on the book.
+     * @param toExit Node of the exit.
      */
-    private void backtracking(Harry curPath, PathObj[][] map, boolean hasCloak, boolean findBook)
-            throws IncorrectDataException {
-        List<Harry> visiblePath = curPath.getVisibilityZone();
-        for (Harry path : visiblePath) {
-            if (table[path.y][path.x] instanceof BadAgent ||
-                    !hasCloak && table[path.y][path.x] instanceof BadAgent.VisibilityZone)
-                continue;
-            if (map[path.y][path.x] == null || map[path.y][path.x].gCost > map[curPath.y][curPath.x].gCost + 1) {
-                map[path.y][path.x] = new PathObj(path.x, path.y, map[curPath.y][curPath.x].gCost + 1, map[curPath.y][curPath.x]);
-                if (!hasCloak && table[path.y][path.x] instanceof Cloak) {
-                    cloak = (Cloak) table[path.y][path.x];
-                    hasCloak = true;
-                }
-                if (findBook && table[path.y][path.x] instanceof Book) {
-                    hadCloak = hasCloak;
-                    if (this.book == null)
-                        this.book = (Book) table[path.y][path.x];
-                    return;
-                } else if (!findBook && table[path.y][path.x] instanceof Exit) {
-                    return;
-                }
-                backtracking(path, map, hasCloak, findBook);
-            }
-        }
-    }
-
-    @Override
-    public String toString() {
-        return "Backtracking";
+    private static void writePath(PathSink sink, int width, SearchWorkspace ws, int toBook, int toExit) {
+        int length = 0;
+        for (int temp = toBook; temp >= 0; temp = ws.nodePrevious(temp))
+            length++;
+        for (int temp = toExit; temp >= 0; temp = ws.nodePrevious(temp))
+            length++;
+        sink.begin(length, width);
+        int end = length;
+        for (int temp = toExit; temp >= 0; temp = ws.nodePrevious(temp))
+            sink.set(--end, ws.nodeCell(temp));
+        for (int temp = toBook; temp >= 0; temp = ws.nodePrevious(temp))
+            sink.set(--end, ws.nodeCell(temp));
     }
 
     /**
-     * Represents the object where Harry can move on.
+     * One pass of the algorithm. Each pass has its own layer of the workspace, nodes and found objects,
+     * so independent passes can work in different threads. The field is only read.
+     * The state of the cell in the layer keeps the cost and the last node of the cell (in place of the parent).
      */
-    private static class PathObj extends MapObj {
-        int x, y;
+    private class Pass implements CostMap {
+        final Field field;                              // the game field.
+        final int width, height;                        // size of the game field.
+        final int scenario;                             // scenario of Harry.
+        final SearchWorkspace ws;                       // workspace of the search.
+        final int layer;                                // layer of the pass in the workspace.
+        final SearchStatistics passStatistics;          // counters of the pass, merged after the solve.
+        Book book;              // found book object.
+        Cloak cloak;            // found invisibility cloak object.
+        boolean hadCloak;       // did Harry have invisibility cloak when he reached the book.
 
-        PathObj(int x, int y, int cost, PathObj prev) {
-            super(cost, prev);
-            this.x = x;
-            this.y = y;
+        Pass(SearchWorkspace ws, int layer, SearchStatistics statistics, int scenario, Book book, Cloak cloak) {
+            this.field = ws.field();
+            this.width = field.getWidth();
+            this.height = field.getHeight();
+            this.ws = ws;
+            this.layer = layer;
+            this.passStatistics = statistics.isEnabled() ? new SearchStatistics() : SearchStatistics.NONE;
+            this.scenario = scenario;
+            this.book = book;
+            this.cloak = cloak;
         }
 
         /**
-         * Returns x-coordinate of this cell.
-         * @return x-coordinate of this cell.
+         * Returns the state of the cell in the layer of this pass.
+         * @param cell Index of the cell.
+         * @return index of the state in the workspace.
          */
-        @Override
-        protected int getX() {
-            return this.x;
+        int state(int cell) {
+            return cell * LAYERS + layer;
         }
 
         /**
-         * Returns y-coordinate of this cell.
-         * @return y-coordinate of this cell.
+         * Checks if the pass has seen the cell.
+         * @param cell Index of the cell.
+         * @return true if the cell has cost in this pass.
          */
+        boolean has(int cell) {
+            return ws.hasCost(state(cell));
+        }
+
+        /**
+         * Returns the cost of the cell. In the second scenario cells which are only seen
+         * are kept with the cost Integer.MAX_VALUE and bad cells with Integer.MIN_VALUE.
+         * @param cell Index of the cell.
+         * @return movement cost to the cell, Integer.MAX_VALUE if the pass did not see it.
+         */
+        int cost(int cell) {
+            return ws.cost(state(cell));
+        }
+
+        /**
+         * Returns the last node of the cell.
+         * @param cell Index of the cell.
+         * @return the node, -1 if the pass did not see the cell.
+         */
+        int node(int cell) {
+            return ws.parent(state(cell));
+        }
+
+        /**
+         * Returns the previous node of the path to the cell.
+         * @param cell Index of the cell.
+         * @return the previous node, -1 if there is no previous node.
+         */
+        int previous(int cell) {
+            return ws.nodePrevious(node(cell));
+        }
+
+        /**
+         * Checks that the pass has the path to the cell.
+         * @param cell Index of the cell.
+         * @return true if the pass reached the cell.
+         */
+        boolean isReached(int cell) {
+            int cost = cost(cell);
+            return cost >= 0 && cost != Integer.MAX_VALUE;
+        }
+
+        /**
+         * Writes the new path to the cell.
+         * @param cell Index of the cell.
+         * @param cost Movement cost to the cell.
+         * @param previous Previous node, -1 if there is no previous node.
+         */
+        void set(int cell, int cost, int previous) {
+            ws.set(state(cell), cost, ws.addNode(layer, cell, cost, previous), false);
+        }
+
+        /**
+         * Makes the node of another pass the last node of its cell in this pass.
+         * The node is shared like the path objects of the old maps, so the copied path continues in its nodes.
+         * @param node The node.
+         */
+        void put(int node) {
+            ws.set(state(ws.nodeCell(node)), ws.nodeCost(node), node, false);
+        }
+
+        /**
+         * Fills the layer with paths from the starting point.
+         * @param startX x-coordinate of the starting point.
+         * @param startY y-coordinate of the starting point.
+         * @param hasCloak Has invisibility cloak or not.
+         * @param findBook true if needed to find book,
+         *                 false if needed to find exit.
+         * @return this pass.
+         */
+        Pass run(int startX, int startY, boolean hasCloak, boolean findBook) {
+            if (scenario == 1)
+                backtracking(startX, startY, hasCloak, findBook);
+            else if (scenario == 2)
+                backtrackingFor2Scenario(startX, startY, hasCloak, findBook);
+            return this;
+        }
+
         @Override
-        protected int getY() {
-            return this.y;
+        public int getCost(int x, int y) {
+            return cost(y * width + x);
+        }
+
+        /**
+         * Backtracking for the second scenario.
+         * States are kept in the stack as packed integers: index of the cell << 1 | has cloak.
+         * @param startX x-coordinate of the starting point.
+         * @param startY y-coordinate of the starting point.
+         * @param hasC Has invisibility cloak or not.
+         * @param findBook true if needed to find book,
+         *                 false if needed to find exit.
+         */
+        private void backtrackingFor2Scenario(int startX, int startY, boolean hasC, boolean findBook) {
+            IntStack states = ws.stack(layer);
+            states.push(field.index(startX, startY) << 1 | (hasC ? 1 : 0));
+
+            while (!states.isEmpty()) {
+                int state = states.pop();
+                boolean hasCloak = (state & 1) != 0;
+                int cur = state >>> 1;
+                int curX = cur % width, curY = cur / width;
+                int curCost = cost(cur);
+
+                if (curCost < 0 || curCost == Integer.MAX_VALUE)
+                    continue;
+
+                passStatistics.expanded();
+
+                // Check current cell because we can "randomly" step on unknown cell
+                if (book == null && field.is(cur, Field.BOOK))
+                    book = new Book(curX, curY);
+                else if (cloak == null && field.is(cur, Field.CLOAK))
+                    cloak = new Cloak(curX, curY);
+
+                // Update map according to visible zone
+                for (int v = 0; v < Stencil.SCENARIO_2.size(); v++) {
+                    int id = Stencil.SCENARIO_2.cell(v, curX, curY, width, height);
+                    if (id < 0) continue;
+                    if (field.isBlocked(id, hasCloak)) {
+                        set(id, Integer.MIN_VALUE, -1);
+                    } else if (book == null && field.is(id, Field.BOOK)) {
+                        book = new Book(id % width, id / width);
+                    } else if (cloak == null && field.is(id, Field.CLOAK)) {
+                        cloak = new Cloak(id % width, id / width);
+                    }
+                    if (!has(id)) {
+                        set(id, Integer.MAX_VALUE, -1);
+                    }
+                }
+                // Move on known cell (counterclockwise)
+                boolean cannotMove = true;
+                for (int m = Stencil.MOVEMENT.size() - 1; m >= 0; m--) {
+                    int id = Stencil.MOVEMENT.cell(m, curX, curY, width, height);
+                    if (id < 0) continue;
+                    if (has(id) && (cost(id) > curCost + 1 && (hasCloak || !field.is(id, Field.PERCEPTION))
+                            || hasCloak && field.is(id, Field.PERCEPTION) && cost(id) == Integer.MIN_VALUE)
+                    ) {
+                        cannotMove = false;
+                        set(id, curCost + 1, node(cur));
+                        if (findBook && book != null && id == field.index(book.x, book.y)) {
+                            hadCloak = hasCloak;
+                            continue;
+                        } else if (!findBook && field.is(id, Field.EXIT)) {
+                            continue;
+                        }
+                        if (!hasCloak && cloak != null && id == field.index(cloak.x, cloak.y)) {
+                            passStatistics.cloakPicked();
+                            states.push(id << 1 | 1);
+                        } else
+                            states.push(id << 1 | (hasCloak ? 1 : 0));
+                    } else if (!has(id))
+                        states.push(id << 1 | (hasCloak ? 1 : 0));
+                }
+                // Move on unknown cell
+                if (cannotMove) {
+                    passStatistics.blindStep();
+                    int nextMove = blindStep(curX, curY, width, height, this);
+                    if (nextMove >= 0) {
+                        set(nextMove, curCost + 1, node(cur));
+                        states.push(nextMove << 1 | (hasCloak ? 1 : 0));
+                    }
+                }
+            }
         }
+
+        /**
+         * Backtracking for the first scenario. Standard backtracking algorithm.
+         * Recursion is replaced by the explicit stack of frames, each frame takes 3 values:
+         * index of the cell, cost of the cell when the frame was created, and packed state
+         * (index of the next neighbour << 2 | initial cloak << 1 | current cloak).
+         * Frame whose cell was already fully explored with smaller cost (and not worse cloak) is dropped,
+         * because it cannot improve any neighbour.
+         * @param startX x-coordinate of the starting point.
+         * @param startY y-coordinate of the starting point.
+         * @param hasC Has invisibility cloak or not.
+         * @param findBook true if needed to find book,
+         *                 false if needed to find exit.
+         */
+        private void backtracking(int startX, int startY, boolean hasC, boolean findBook) {
+            IntStack frames = ws.stack(layer);
+            int start = field.index(startX, startY);
+            frames.push(start);
+            frames.push(cost(start));
+            frames.push(hasC ? 3 : 0);
+
+            frame:
+            while (!frames.isEmpty()) {
+                int top = frames.size() - 3;
+                int cur = frames.get(top), state = frames.get(top + 2);
+                int curX = cur % width, curY = cur / width;
+                boolean hasCloak = (state & 1) != 0;
+                boolean startedWithCloak = (state & 2) != 0;
+                int curNode = node(cur), curCost = cost(cur), flags = ws.nodeFlags(curNode);
+
+                if (curCost < frames.get(top + 1) && (flags & EXPANDED) != 0
+                        && ((flags & EXPANDED_WITH_CLOAK) != 0 || !hasCloak)) {
+                    // The cell was already explored with smaller cost
+                    frames.drop(3);
+                    continue;
+                }
+                if (state >>> 2 == 0)
+                    passStatistics.expanded();
+                for (int v = state >>> 2; v < Stencil.SCENARIO_1.size(); v++) {
+                    int id = Stencil.SCENARIO_1.cell(v, curX, curY, width, height);
+                    if (id < 0 || field.isBlocked(id, hasCloak))
+                        continue;
+                    if (cost(id) > curCost + 1) {
+                        set(id, curCost + 1, curNode);
+                        if (!hasCloak && field.is(id, Field.CLOAK)) {
+                            cloak = new Cloak(id % width, id / width);
+                            hasCloak = true;
+                            passStatistics.cloakPicked();
+                        }
+                        if (findBook && field.is(id, Field.BOOK)) {
+                            hadCloak = hasCloak;
+                            if (this.book == null)
+                                this.book = new Book(id % width, id / width);
+                            frames.drop(3);
+                            continue frame;
+                        } else if (!findBook && field.is(id, Field.EXIT)) {
+                            frames.drop(3);
+                            continue frame;
+                        }
+                        // Suspend current frame and continue from the neighbour
+                        frames.set(top + 2, (v + 1) << 2 | (startedWithCloak ? 2 : 0) | (hasCloak ? 1 : 0));
+                        frames.push(id);
+                        frames.push(curCost + 1);
+                        frames.push(hasCloak ? 3 : 0);
+                        continue frame;
+                    }
+                }
+                // All neighbours are checked, the frame is finished
+                if (curCost == frames.get(top + 1))
+                    ws.setNodeFlags(curNode, EXPANDED | (startedWithCloak ? EXPANDED_WITH_CLOAK : 0));
+                frames.drop(3);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Backtracking";
     }
 }
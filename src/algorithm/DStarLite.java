@@ -0,0 +1,362 @@
+package algorithm;
+
+import agents.*;
+import game.Field;
+
+import java.util.*;
+
+/**
+ * D* Lite: incremental replanning on the field where the inspectors move (see game.DynamicField).
+ * The search works backwards from the exit over the layers (has book, has cloak) like LayeredSearch,
+ * so the distance of each state to the exit is kept between the calls. When perception zones change,
+ * only the states of the changed cells and their neighbours are updated, and the next call repairs
+ * the search from them. Therefore, the work of one tick depends on the size of the change, not on the size of the field.
+ * Harry knows positions of the inspectors (the plan of the patrol is reported to him), the visibility zone is not used.
+ * Usage:
+ * <pre>
+ * DStarLite planner = new DStarLite(field);
+ * Path[] path = planner.getMinimalPath(harry, exit);
+ * int[] changed = field.moveInspector(field.getInspectors().get(0), x, y);
+ * planner.update(changed);
+ * path = planner.replan(path[1].x, path[1].y, hasBook, hasCloak);
+ * </pre>
+ */
+public class DStarLite extends Algorithm {
+    /**
+     * Flags of the layer: Harry has invisibility cloak, Harry has the book.
+     */
+    private static final int CLOAK = 1, BOOK = 2;
+    /**
+     * Number of layers (all combinations of the flags).
+     */
+    private static final int LAYERS = 4;
+    /**
+     * Infinite distance.
+     */
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final Field field;          // the game field, its danger may change between the calls.
+    private final int width;            // width of the game field.
+    private final int height;           // height of the game field.
+
+    // States are indexed by cell << 2 | layer
+    private final int[] g;              // distance to the exit calculated by the search.
+    private final int[] rhs;            // one-step lookahead of the distance.
+    private final IndexedHeap open;     // locally inconsistent states.
+    private int exit = -1;              // cell of the exit, -1 if the search is not initialized.
+    private int start;                  // current state of Harry.
+    private int km;                     // sum of the heuristics between consecutive starts.
+
+    /**
+     * Creates the planner of the field. The planner keeps the search between the calls,
+     * so it is bound to the field and cannot be shared between threads.
+     * @param field The game field.
+     */
+    public DStarLite(Field field) {
+        super(field);
+        this.field = field;
+        this.width = field.getWidth();
+        this.height = field.getHeight();
+        this.g = new int[width * height * LAYERS];
+        this.rhs = new int[g.length];
+        this.open = new IndexedHeap(g.length);
+    }
+
+    /**
+     * Finding optimal (minimal) path from the start without book and cloak.
+     * The search is created again only if the exit is changed, otherwise it is repaired.
+     * @param field The game field of the planner.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
+     * @throws NoPathException If there is no path.
+     * @throws IncorrectDataException If the field is not the field of the planner.
+     */
+    @Override
+    public void getMinimalPath(Field field, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException, IncorrectDataException {
+        if (field != this.field)
+            throw new IncorrectDataException("D* Lite keeps the search of its own field, another field is given.");
+        int cell = field.index(exit.x, exit.y);
+        if (cell != this.exit) {
+            this.exit = cell;
+            reset(statistics);
+        }
+        replan(harry.x, harry.y, false, false, sink, statistics);
+    }
+
+    /**
+     * Repairs the search for the new position of Harry and returns the path from it.
+     * @param x x-coordinate of Harry.
+     * @param y y-coordinate of Harry.
+     * @param hasBook Does Harry have the book.
+     * @param hasCloak Does Harry have invisibility cloak.
+     * @return Array with a path to end point, the first cell is the position of Harry.
+     * @throws NoPathException If there is no path or the exit is not set by getMinimalPath().
+     */
+    public Path[] replan(int x, int y, boolean hasBook, boolean hasCloak) throws NoPathException {
+        PackedPath path = new PackedPath();
+        replan(x, y, hasBook, hasCloak, path);
+        return path.toArray();
+    }
+
+    /**
+     * Repairs the search for the new position of Harry and writes the path from it into the sink.
+     * @param x x-coordinate of Harry.
+     * @param y y-coordinate of Harry.
+     * @param hasBook Does Harry have the book.
+     * @param hasCloak Does Harry have invisibility cloak.
+     * @param sink Receiver of the path to end point, the first cell is the position of Harry.
+     * @throws NoPathException If there is no path or the exit is not set by getMinimalPath().
+     */
+    public void replan(int x, int y, boolean hasBook, boolean hasCloak, PathSink sink) throws NoPathException {
+        replan(x, y, hasBook, hasCloak, sink, SearchStatistics.NONE);
+    }
+
+    /**
+     * Repairs the search for the new position of Harry and writes the path from it into the sink.
+     * @param x x-coordinate of Harry.
+     * @param y y-coordinate of Harry.
+     * @param hasBook Does Harry have the book.
+     * @param hasCloak Does Harry have invisibility cloak.
+     * @param sink Receiver of the path to end point, the first cell is the position of Harry.
+     * @param statistics Counters of the search.
+     * @throws NoPathException If there is no path or the exit is not set by getMinimalPath().
+     */
+    public void replan(int x, int y, boolean hasBook, boolean hasCloak, PathSink sink, SearchStatistics statistics)
+            throws NoPathException {
+        if (exit < 0)
+            throw new NoPathException();
+        statistics.startPhase();
+        int state = field.index(x, y) << 2 | (hasBook ? BOOK : 0) | (hasCloak ? CLOAK : 0);
+        km += getHeuristic(start >>> 2, state >>> 2);
+        start = state;
+        computeShortestPath(statistics);
+        if (g[start] == INFINITY) {
+            statistics.endPhase(SearchStatistics.PHASE_EXIT);
+            throw new NoPathException();
+        }
+        writePath(sink, statistics);
+        statistics.endPhase(SearchStatistics.PHASE_EXIT);
+    }
+
+    /**
+     * Notifies the search that danger of the cells was changed (e.g. by DynamicField.moveInspector()).
+     * Updates states of the cells and states of their neighbours, which can move on the cells.
+     * @param cells Indexes of the changed cells.
+     */
+    public void update(int[] cells) {
+        update(cells, SearchStatistics.NONE);
+    }
+
+    /**
+     * Notifies the search that danger of the cells was changed and counts the updated states.
+     * @param cells Indexes of the changed cells.
+     * @param statistics Counters of the search.
+     */
+    public void update(int[] cells, SearchStatistics statistics) {
+        if (exit < 0)
+            return;
+        for (int cell : cells) {
+            for (int layer = 0; layer < LAYERS; layer++)
+                updateState(cell << 2 | layer, statistics);
+            int x = cell % width, y = cell / width;
+            for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                int id = Stencil.MOVEMENT.cell(m, x, y, width, height);
+                if (id < 0) continue;
+                for (int layer = 0; layer < LAYERS; layer++)
+                    updateState(id << 2 | layer, statistics);
+            }
+        }
+    }
+
+    /**
+     * Creates the search from scratch: all distances are infinite except the exit with the book.
+     * @param statistics Counters of the search.
+     */
+    private void reset(SearchStatistics statistics) {
+        Arrays.fill(g, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        open.clear();
+        km = 0;
+        start = exit << 2;
+        for (int layer = BOOK; layer < LAYERS; layer++) {
+            int goal = exit << 2 | layer;
+            rhs[goal] = isFree(exit, layer) ? 0 : INFINITY;
+            if (rhs[goal] == 0)
+                push(goal, statistics);
+        }
+    }
+
+    /**
+     * Expands inconsistent states until the distance of the start is correct.
+     * @param statistics Counters of the search.
+     */
+    private void computeShortestPath(SearchStatistics statistics) {
+        while (!open.isEmpty() && (open.peekKey() < getKey(start) || rhs[start] != g[start])) {
+            int state = open.peek();
+            long oldKey = open.peekKey(), newKey = getKey(state);
+            if (oldKey < newKey) {
+                open.update(state, newKey);
+                statistics.updated();
+            } else if (g[state] > rhs[state]) {
+                // Overconsistent: the distance is decreased
+                g[state] = rhs[state];
+                open.remove(state);
+                statistics.expanded();
+                updatePredecessors(state, statistics);
+            } else {
+                // Underconsistent: the distance is increased
+                g[state] = INFINITY;
+                statistics.expanded();
+                updateState(state, statistics);
+                updatePredecessors(state, statistics);
+            }
+        }
+    }
+
+    /**
+     * Updates states from which Harry can step on the state.
+     * Harry comes to the state from the neighbouring cell in the same layer, or in the layer without the object
+     * which lies in the cell of the state.
+     * @param state Index of the state.
+     * @param statistics Counters of the search.
+     */
+    private void updatePredecessors(int state, SearchStatistics statistics) {
+        int cell = state >>> 2, layer = state & 3;
+        int objects = getObjects(cell);
+        int x = cell % width, y = cell / width;
+        for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+            int id = Stencil.MOVEMENT.cell(m, x, y, width, height);
+            if (id < 0) continue;
+            for (int from = 0; from < LAYERS; from++) {
+                if ((from | objects) == layer)
+                    updateState(id << 2 | from, statistics);
+            }
+        }
+    }
+
+    /**
+     * Recalculates lookahead of the state and puts it to OPEN if it is inconsistent.
+     * @param state Index of the state.
+     * @param statistics Counters of the search.
+     */
+    private void updateState(int state, SearchStatistics statistics) {
+        int cell = state >>> 2, layer = state & 3;
+        if (cell == exit && (layer & BOOK) != 0) {
+            rhs[state] = isFree(cell, layer) ? 0 : INFINITY;
+        } else {
+            int best = INFINITY;
+            if (isFree(cell, layer)) {
+                int x = cell % width, y = cell / width;
+                for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                    int next = getSuccessor(layer, Stencil.MOVEMENT.cell(m, x, y, width, height));
+                    if (next >= 0 && g[next] != INFINITY && g[next] + 1 < best)
+                        best = g[next] + 1;
+                }
+            }
+            rhs[state] = best;
+        }
+        if (g[state] != rhs[state])
+            push(state, statistics);
+        else
+            open.remove(state);
+    }
+
+    /**
+     * Returns the state after the step of Harry from the layer on the cell.
+     * @param layer Current layer of Harry.
+     * @param cell Index of the neighbouring cell, -1 if the cell is outside of the field.
+     * @return Index of the next state, -1 if Harry cannot step on the cell.
+     */
+    private int getSuccessor(int layer, int cell) {
+        if (cell < 0 || field.isBlocked(cell, (layer & CLOAK) != 0))
+            return -1;
+        return cell << 2 | layer | getObjects(cell);
+    }
+
+    /**
+     * Returns flags of the layers for the objects in the cell.
+     * @param cell Index of the cell.
+     * @return BOOK and (or) CLOAK flags of the cell.
+     */
+    private int getObjects(int cell) {
+        return (field.is(cell, Field.BOOK) ? BOOK : 0) | (field.is(cell, Field.CLOAK) ? CLOAK : 0);
+    }
+
+    /**
+     * Checks if Harry can stay in the cell in the layer.
+     * @param cell Index of the cell.
+     * @param layer Layer of Harry.
+     * @return true if the cell is not blocked.
+     */
+    private boolean isFree(int cell, int layer) {
+        return !field.isBlocked(cell, (layer & CLOAK) != 0);
+    }
+
+    /**
+     * Puts the state to OPEN or updates its key.
+     * @param state Index of the state.
+     * @param statistics Counters of the search.
+     */
+    private void push(int state, SearchStatistics statistics) {
+        if (!open.contains(state))
+            statistics.pushed();
+        open.push(state, getKey(state));
+    }
+
+    /**
+     * Calculates the key of the state: (min(g, rhs) + heuristics + km, min(g, rhs)) packed into long.
+     * @param state Index of the state.
+     * @return the key of the state.
+     */
+    private long getKey(int state) {
+        long min = Math.min(g[state], rhs[state]);
+        if (min == INFINITY)
+            return Long.MAX_VALUE;
+        return (min + getHeuristic(start >>> 2, state >>> 2) + km) << 32 | min;
+    }
+
+    /**
+     * Number of steps between cells on the empty field (Chebyshev distance).
+     * @param a Index of the first cell.
+     * @param b Index of the second cell.
+     * @return lower bound of the distance between cells.
+     */
+    private int getHeuristic(int a, int b) {
+        return Math.max(Math.abs(a % width - b % width), Math.abs(a / width - b / width));
+    }
+
+    /**
+     * Restores the path from the start, each next state has the minimal distance to the exit.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
+     */
+    private void writePath(PathSink sink, SearchStatistics statistics) {
+        int length = g[start] + 1;
+        sink.begin(length, width);
+        int state = start;
+        for (int i = 0; i < length; i++) {
+            int cell = state >>> 2, layer = state & 3;
+            sink.set(i, cell);
+            if (i + 1 == length) break;
+            int best = -1;
+            for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                int next = getSuccessor(layer, Stencil.MOVEMENT.cell(m, cell % width, cell / width, width, height));
+                if (next >= 0 && g[next] != INFINITY && (best < 0 || g[next] < g[best]))
+                    best = next;
+            }
+            if ((best & ~layer & BOOK) != 0)
+                statistics.bookFound();
+            if ((best & ~layer & CLOAK) != 0)
+                statistics.cloakPicked();
+            state = best;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "D* Lite";
+    }
+}
@@ -0,0 +1,51 @@
+package algorithm;
+
+/**
+ * Lower bound of the number of steps between two cells, used by A star as heuristics (hCost).
+ * Implementations must not change after creation, so one object can be shared by many algorithms and threads.
+ */
+public interface Heuristic {
+    /**
+     * Number of steps on the empty field: each move (including diagonal) costs 1.
+     * Exact distance when there are no inspectors on the way.
+     */
+    Heuristic CHEBYSHEV = new Heuristic() {
+        @Override
+        public int estimate(int x, int y, int targetX, int targetY, boolean hasCloak) {
+            return Math.max(Math.abs(x - targetX), Math.abs(y - targetY));
+        }
+
+        @Override
+        public String toString() {
+            return "Chebyshev";
+        }
+    };
+
+    /**
+     * Euclidean distance rounded down. It was the only heuristics of A star before,
+     * note that it overestimates diagonal paths (e.g. 2 steps from [0,0] to [2,2] are estimated as 2.83).
+     */
+    Heuristic EUCLID = new Heuristic() {
+        @Override
+        public int estimate(int x, int y, int targetX, int targetY, boolean hasCloak) {
+            int dx = x - targetX, dy = y - targetY;
+            return (int) Math.sqrt(dx * dx + dy * dy);
+        }
+
+        @Override
+        public String toString() {
+            return "Euclid";
+        }
+    };
+
+    /**
+     * Estimates the number of steps from the cell to the target.
+     * @param x x-coordinate of the cell.
+     * @param y y-coordinate of the cell.
+     * @param targetX x-coordinate of the target.
+     * @param targetY y-coordinate of the target.
+     * @param hasCloak Does Harry have invisibility cloak in the cell.
+     * @return estimated number of steps.
+     */
+    int estimate(int x, int y, int targetX, int targetY, boolean hasCloak);
+}
@@ -0,0 +1,208 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over integer identifiers (cell indices) with decrease-key support.
+ * Each identifier can be in the heap at most once, its position is tracked in the index array,
+ * therefore membership test is O(1) and priority update is O(log n).
+ * Elements with equal keys are polled in the order they were pushed.
+ */
+class IndexedHeap {
+    private final int[] heap;       // Identifiers ordered as a binary heap.
+    private final int[] position;   // Position of the identifier in the heap, -1 if absent.
+    private final long[] keys;      // Priority of each identifier.
+    private final long[] order;     // Push counter of each identifier to break ties.
+    private long counter;
+    private int size;
+
+    /**
+     * Creates an empty heap.
+     * @param capacity Maximum identifier + 1 (amount of cells on the field).
+     */
+    IndexedHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new long[capacity];
+        this.order = new long[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Returns true if there are no elements in the heap.
+     * @return true if there are no elements in the heap.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the amount of elements in the heap.
+     * @return the amount of elements in the heap.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the identifier is in the heap.
+     * @param id Identifier to check.
+     * @return true if the identifier is in the heap, false otherwise.
+     */
+    boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    /**
+     * Returns the identifier with minimal key without removing it.
+     * @return the identifier with minimal key, -1 if the heap is empty.
+     */
+    int peek() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+     * Returns the minimal key in the heap.
+     * @return the minimal key, Long.MAX_VALUE if the heap is empty.
+     */
+    long peekKey() {
+        return size == 0 ? Long.MAX_VALUE : keys[heap[0]];
+    }
+
+    /**
+     * Inserts the identifier into the heap.
+     * If the identifier is already in the heap, then only its key is updated.
+     * @param id Identifier to insert.
+     * @param key Priority of the identifier. Element with minimal key is polled first.
+     */
+    void push(int id, long key) {
+        if (position[id] >= 0) {
+            update(id, key);
+            return;
+        }
+        keys[id] = key;
+        order[id] = counter++;
+        heap[size] = id;
+        position[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Changes the key of the identifier which is already in the heap.
+     * The key can be decreased or increased.
+     * @param id Identifier to update.
+     * @param key New priority of the identifier.
+     */
+    void update(int id, long key) {
+        long old = keys[id];
+        keys[id] = key;
+        if (key < old) siftUp(position[id]);
+        else if (key > old) siftDown(position[id]);
+    }
+
+    /**
+     * Removes and returns the identifier with minimal key.
+     * @return the identifier with minimal key, -1 if the heap is empty.
+     */
+    int poll() {
+        if (size == 0)
+            return -1;
+        int top = heap[0];
+        position[top] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes the identifier from the heap if it is there.
+     * @param id Identifier to remove.
+     */
+    void remove(int id) {
+        int i = position[id];
+        if (i < 0)
+            return;
+        position[id] = -1;
+        if (i == --size)
+            return;
+        int moved = heap[size];
+        heap[i] = moved;
+        position[moved] = i;
+        siftDown(i);
+        if (position[moved] == i)
+            siftUp(i);
+    }
+
+    /**
+     * Removes all elements from the heap.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+    /**
+     * Changes keys of all elements in the heap at once and restores the heap order in O(n).
+     * @param newKeys Function which calculates new key of the identifier.
+     */
+    void rebuild(KeyFunction newKeys) {
+        for (int i = 0; i < size; i++)
+            keys[heap[i]] = newKeys.key(heap[i]);
+        for (int i = size / 2 - 1; i >= 0; i--)
+            siftDown(i);
+    }
+
+    /**
+     * Compares 2 identifiers by key, then by insertion order.
+     * @param a First identifier.
+     * @param b Second identifier.
+     * @return true if the first identifier must be polled before the second.
+     */
+    private boolean less(int a, int b) {
+        if (keys[a] != keys[b])
+            return keys[a] < keys[b];
+        return order[a] < order[b];
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(id, heap[parent]))
+                break;
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && less(heap[child + 1], heap[child]))
+                child++;
+            if (!less(heap[child], id))
+                break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    /**
+     * Calculates key for the identifier. Used to rebuild the heap.
+     */
+    interface KeyFunction {
+        long key(int id);
+    }
+}
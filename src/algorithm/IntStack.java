@@ -0,0 +1,92 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Growable stack of primitive integers. Not synchronized.
+ * Used instead of java.util.Stack to avoid boxing and creation of an object for each state.
+ */
+class IntStack {
+    private int[] data;
+    private int size;
+
+    IntStack() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty stack.
+     * @param capacity Initial capacity of the stack.
+     */
+    IntStack(int capacity) {
+        this.data = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Puts the value on the top of the stack.
+     * @param value Value to put.
+     */
+    void push(int value) {
+        if (size == data.length)
+            data = Arrays.copyOf(data, size * 2);
+        data[size++] = value;
+    }
+
+    /**
+     * Removes and returns the value from the top of the stack.
+     * @return the value from the top of the stack.
+     */
+    int pop() {
+        return data[--size];
+    }
+
+    /**
+     * Returns the value from the top of the stack without removing it.
+     * @return the value from the top of the stack.
+     */
+    int peek() {
+        return data[size - 1];
+    }
+
+    /**
+     * Returns the value by its position from the bottom of the stack.
+     * @param index Position of the value.
+     * @return the value on the given position.
+     */
+    int get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Replaces the value on the given position from the bottom of the stack.
+     * @param index Position of the value.
+     * @param value New value.
+     */
+    void set(int index, int value) {
+        data[index] = value;
+    }
+
+    /**
+     * Removes the given amount of values from the top of the stack.
+     * @param count Amount of values to remove.
+     */
+    void drop(int count) {
+        size -= count;
+    }
+
+    /**
+     * Returns the amount of values in the stack.
+     * @return the amount of values in the stack.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there are no values in the stack.
+     * @return true if there are no values in the stack.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
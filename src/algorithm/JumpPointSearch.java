@@ -0,0 +1,309 @@
+package algorithm;
+
+import agents.*;
+import game.Field;
+
+/**
+ * Jump Point Search for the whole known field.
+ * Harry knows the plan of the library with the perception zones of the inspectors, so the visibility zone
+ * (and the scenario) is not used. The search works over the same layers as LayeredSearch
+ * (has book, has cloak), blocked cells of the layer depend on the cloak.
+ * Instead of the neighbouring cells, the search jumps in straight and diagonal lines and stops only in jump points:
+ * cells with forced neighbours (near a corner of the perception zone), the book, the cloak and the exit with the book.
+ * Cells between two jump points always lie on one straight or diagonal line, so the path is restored by steps.
+ * Diagonal moves may cut corners of the blocked cells, like in other algorithms.
+ */
+public class JumpPointSearch extends Algorithm {
+    /**
+     * Flags of the layer: Harry has invisibility cloak, Harry has the book.
+     */
+    private static final int CLOAK = 1, BOOK = 2;
+    /**
+     * Number of layers (all combinations of the flags).
+     */
+    private static final int LAYERS = 4;
+
+    /**
+     * Creates the algorithm for any field.
+     */
+    public JumpPointSearch() {
+        super();
+    }
+
+    /**
+     * Creates the algorithm bound to the field.
+     * @param field The game field.
+     */
+    public JumpPointSearch(Field field) {
+        super(field);
+    }
+
+    /**
+     * Finding optimal (minimal) path using A* with jump points.
+     * @param field The game field.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
+     * @throws NoPathException If there is no path (there is no book or it cannot be reached).
+     */
+    @Override
+    public void getMinimalPath(Field field, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException {
+        statistics.startPhase();
+        int book = -1;
+        for (int cell = 0; cell < field.getWidth() * field.getHeight() && book < 0; cell++) {
+            if (field.is(cell, Field.BOOK))
+                book = cell;
+        }
+        if (book < 0) {
+            statistics.endPhase(SearchStatistics.PHASE_BOOK);
+            throw new NoPathException();
+        }
+        SearchWorkspace ws = SearchWorkspace.borrow(field, LAYERS);
+        try {
+            Search search = new Search(ws, statistics, book, field.index(exit.x, exit.y));
+            int goal = search.run(field.index(harry.x, harry.y));
+            if (goal < 0) {
+                statistics.endPhase(search.needBook ? SearchStatistics.PHASE_BOOK : SearchStatistics.PHASE_EXIT);
+                throw new NoPathException();
+            }
+            search.writePath(goal, sink);
+            statistics.endPhase(SearchStatistics.PHASE_EXIT);
+        } finally {
+            ws.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Jump Point Search";
+    }
+
+    /**
+     * State of one call of the search. States are indexed by cell << 2 | layer.
+     * Costs, previous jump points, closed states and OPEN are kept in the workspace (see SearchWorkspace).
+     * The key in OPEN is f cost << 32 | state, so states with equal cost are taken in the order of their indexes.
+     */
+    private class Search {
+        final Field field;                      // the game field.
+        final int width, height;                // size of the game field.
+        final SearchStatistics statistics;      // counters of the call.
+        final int book, exit;                   // cells of the book and the exit.
+        final SearchWorkspace ws;               // costs and previous jump points of the states.
+        final IndexedHeap open;
+        boolean needBook = true;
+
+        Search(SearchWorkspace ws, SearchStatistics statistics, int book, int exit) {
+            this.field = ws.field();
+            this.width = field.getWidth();
+            this.height = field.getHeight();
+            this.statistics = statistics;
+            this.ws = ws;
+            this.open = ws.open();
+            this.book = book;
+            this.exit = exit;
+        }
+
+        /**
+         * Looks for the shortest path from the starting cell.
+         * @param start Cell of Harry.
+         * @return state of the exit with the book, -1 if there is no path.
+         */
+        int run(int start) {
+            ws.set(start << 2, 0, -1, false);
+            push(start << 2, 0);
+            while (!open.isEmpty()) {
+                int state = open.poll();
+                ws.close(state);
+                statistics.expanded();
+                int cell = state >>> 2, layer = state & 3;
+                if ((layer & BOOK) != 0) {
+                    if (needBook) {
+                        needBook = false;
+                        statistics.bookFound();
+                        statistics.endPhase(SearchStatistics.PHASE_BOOK);
+                    }
+                    if (cell == exit)
+                        return state;
+                }
+
+                int x = cell % width, y = cell / width;
+                int from = ws.parent(state);
+                if (from < 0 || (from & 3) != layer) {
+                    // Start or the object was picked up: all directions are open
+                    for (int m = 0; m < Stencil.MOVEMENT.size(); m++)
+                        jumpFrom(state, x, y, Stencil.MOVEMENT.dx(m), Stencil.MOVEMENT.dy(m));
+                    continue;
+                }
+                int dx = Integer.signum(x - (from >>> 2) % width), dy = Integer.signum(y - (from >>> 2) / width);
+                boolean cloak = (layer & CLOAK) != 0;
+                if (dx != 0 && dy != 0) {
+                    jumpFrom(state, x, y, dx, dy);
+                    jumpFrom(state, x, y, dx, 0);
+                    jumpFrom(state, x, y, 0, dy);
+                    if (isBlocked(x - dx, y, cloak))
+                        jumpFrom(state, x, y, -dx, dy);
+                    if (isBlocked(x, y - dy, cloak))
+                        jumpFrom(state, x, y, dx, -dy);
+                } else if (dx != 0) {
+                    jumpFrom(state, x, y, dx, 0);
+                    if (isBlocked(x, y + 1, cloak))
+                        jumpFrom(state, x, y, dx, 1);
+                    if (isBlocked(x, y - 1, cloak))
+                        jumpFrom(state, x, y, dx, -1);
+                } else {
+                    jumpFrom(state, x, y, 0, dy);
+                    if (isBlocked(x + 1, y, cloak))
+                        jumpFrom(state, x, y, 1, dy);
+                    if (isBlocked(x - 1, y, cloak))
+                        jumpFrom(state, x, y, -1, dy);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Jumps from the state in the direction and relaxes the found jump point.
+         * Stepping on the book or on the cloak moves Harry to the layer with the object.
+         * @param state Current state.
+         * @param x x-coordinate of the current cell.
+         * @param y y-coordinate of the current cell.
+         * @param dx Direction by x axes (-1, 0 or 1).
+         * @param dy Direction by y axes (-1, 0 or 1).
+         */
+        private void jumpFrom(int state, int x, int y, int dx, int dy) {
+            int layer = state & 3;
+            int cell = jump(x, y, dx, dy, layer);
+            if (cell < 0)
+                return;
+            int next = layer;
+            if (cell == book)
+                next |= BOOK;
+            if (field.is(cell, Field.CLOAK))
+                next |= CLOAK;
+            int nextState = cell << 2 | next;
+            int cost = ws.cost(state) + Math.max(Math.abs(cell % width - x), Math.abs(cell / width - y));
+            if (cost < ws.cost(nextState)) {
+                if ((next & ~layer & CLOAK) != 0 && !ws.hasCost(nextState))
+                    statistics.cloakPicked();
+                ws.set(nextState, cost, state, false);
+                ws.reopen(nextState);
+                push(nextState, cost + getHeuristic(cell, next));
+            }
+        }
+
+        /**
+         * Moves from the cell in the direction until the jump point.
+         * @param x x-coordinate of the starting cell.
+         * @param y y-coordinate of the starting cell.
+         * @param dx Direction by x axes (-1, 0 or 1).
+         * @param dy Direction by y axes (-1, 0 or 1).
+         * @param layer Layer of the search.
+         * @return index of the jump point, -1 if the line ends with the blocked cell or the border.
+         */
+        private int jump(int x, int y, int dx, int dy, int layer) {
+            boolean cloak = (layer & CLOAK) != 0;
+            while (true) {
+                x += dx;
+                y += dy;
+                if (isBlocked(x, y, cloak))
+                    return -1;
+                int cell = y * width + x;
+                if (isTarget(cell, layer))
+                    return cell;
+                if (dx != 0 && dy != 0) {
+                    if (!isBlocked(x - dx, y + dy, cloak) && isBlocked(x - dx, y, cloak)
+                            || !isBlocked(x + dx, y - dy, cloak) && isBlocked(x, y - dy, cloak))
+                        return cell;
+                    // Straight lines from the diagonal cell
+                    if (jump(x, y, dx, 0, layer) >= 0 || jump(x, y, 0, dy, layer) >= 0)
+                        return cell;
+                } else if (dx != 0) {
+                    if (!isBlocked(x + dx, y + 1, cloak) && isBlocked(x, y + 1, cloak)
+                            || !isBlocked(x + dx, y - 1, cloak) && isBlocked(x, y - 1, cloak))
+                        return cell;
+                } else {
+                    if (!isBlocked(x + 1, y + dy, cloak) && isBlocked(x + 1, y, cloak)
+                            || !isBlocked(x - 1, y + dy, cloak) && isBlocked(x - 1, y, cloak))
+                        return cell;
+                }
+            }
+        }
+
+        /**
+         * Checks if the search must stop on the cell: the book or the cloak which Harry does not have yet,
+         * or the exit when Harry has the book.
+         * @param cell Index of the cell.
+         * @param layer Layer of the search.
+         * @return true if the cell is the jump point in any direction.
+         */
+        private boolean isTarget(int cell, int layer) {
+            if ((layer & BOOK) == 0)
+                return cell == book || (layer & CLOAK) == 0 && field.is(cell, Field.CLOAK);
+            return cell == exit || (layer & CLOAK) == 0 && field.is(cell, Field.CLOAK);
+        }
+
+        /**
+         * Checks if Harry cannot step on the cell.
+         * @param x x-coordinate of the cell.
+         * @param y y-coordinate of the cell.
+         * @param cloak Does Harry have invisibility cloak.
+         * @return true if the cell is outside of the field or blocked.
+         */
+        private boolean isBlocked(int x, int y, boolean cloak) {
+            return x < 0 || y < 0 || x >= width || y >= height || field.isBlocked(y * width + x, cloak);
+        }
+
+        /**
+         * Chebyshev distance to the book and then to the exit, or to the exit if Harry has the book.
+         * @param cell Index of the cell.
+         * @param layer Layer of the cell.
+         * @return lower bound of the remaining steps.
+         */
+        private int getHeuristic(int cell, int layer) {
+            if ((layer & BOOK) != 0)
+                return distance(cell, exit);
+            return distance(cell, book) + distance(book, exit);
+        }
+
+        /**
+         * Returns the number of steps between cells on the empty field.
+         * @param a Index of the first cell.
+         * @param b Index of the second cell.
+         * @return Chebyshev distance between cells.
+         */
+        private int distance(int a, int b) {
+            return Math.max(Math.abs(a % width - b % width), Math.abs(a / width - b / width));
+        }
+
+        /**
+         * Puts the state to OPEN or decreases its key.
+         * @param state Index of the state.
+         * @param fCost Cost of the path through the state.
+         */
+        private void push(int state, int fCost) {
+            open.push(state, (long) fCost << 32 | state);
+            statistics.pushed();
+        }
+
+        /**
+         * Restores all cells of the path from the chain of jump points.
+         * @param goal State of the exit.
+         * @param sink Receiver of the path to end point.
+         */
+        void writePath(int goal, PathSink sink) {
+            sink.begin(ws.cost(goal) + 1, width);
+            int i = ws.cost(goal);
+            int state = goal;
+            for (; ws.parent(state) >= 0; state = ws.parent(state)) {
+                int cell = state >>> 2, prev = ws.parent(state) >>> 2;
+                int x = cell % width, y = cell / width;
+                int dx = Integer.signum(prev % width - x), dy = Integer.signum(prev / width - y);
+                for (; x != prev % width || y != prev / width; x += dx, y += dy)
+                    sink.set(i--, y * width + x);
+            }
+            sink.set(0, state >>> 2);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package algorithm;
+
+import agents.Stencil;
+import game.Field;
+
+import java.util.*;
+
+/**
+ * ALT heuristics (A star, Landmarks, Triangle inequality) for one field.
+ * True distances from a few landmark cells to all cells are precomputed once by BFS,
+ * then for any cells a and b: dist(a, b) >= |dist(L, a) - dist(L, b)| for each landmark L.
+ * Distances are calculated without cloak (perception zones are blocked), so the bound takes into account
+ * the way around the inspectors. If Harry can still pick up the cloak, the bound is taken through the cloak:
+ * min(bound(a, b), bound(a, cloak) + Chebyshev(cloak, b)).
+ * Note: the heuristics knows the whole field, it is created once and shared by all searches on this field.
+ */
+public class LandmarkHeuristic implements Heuristic {
+    private final int width, height;
+    private final int[][] distances;    // distances from each landmark, -1 for unreachable cells.
+    private final int cloak;            // cell of the cloak, -1 if there is no cloak.
+
+    /**
+     * Selects landmarks and calculates distances from them.
+     * Each next landmark is the reachable cell farthest from the already selected ones (the first one is
+     * farthest from [0,0]), so landmarks lie on the borders and behind the perception zones.
+     * @param field The game field.
+     * @param landmarks Number of landmarks, e.g. 4 to 8.
+     * @throws IncorrectDataException If the number of landmarks is not positive.
+     */
+    public LandmarkHeuristic(Field field, int landmarks) throws IncorrectDataException {
+        if (landmarks <= 0)
+            throw new IncorrectDataException("Number of landmarks must be positive. Given: " + landmarks);
+        this.width = field.getWidth();
+        this.height = field.getHeight();
+        int cloak = -1;
+        for (int cell = 0; cell < width * height && cloak < 0; cell++) {
+            if (field.is(cell, Field.CLOAK))
+                cloak = cell;
+        }
+        this.cloak = cloak;
+
+        this.distances = new int[landmarks][];
+        int[] nearest = bfs(field, 0);     // distance to the nearest selected landmark.
+        for (int i = 0; i < landmarks; i++) {
+            int farthest = 0;
+            for (int cell = 1; cell < nearest.length; cell++) {
+                if (nearest[cell] > nearest[farthest])
+                    farthest = cell;
+            }
+            distances[i] = bfs(field, farthest);
+            for (int cell = 0; cell < nearest.length; cell++) {
+                if (i == 0 || distances[i][cell] >= 0 && distances[i][cell] < nearest[cell])
+                    nearest[cell] = distances[i][cell];
+            }
+        }
+    }
+
+    /**
+     * Calculates distances from the cell to all cells which can be reached without cloak.
+     * @param field The game field.
+     * @param from Index of the starting cell.
+     * @return distances to all cells, -1 for unreachable cells.
+     */
+    private int[] bfs(Field field, int from) {
+        int[] distance = new int[width * height];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[width * height];
+        int head = 0, tail = 0;
+        distance[from] = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int cur = queue[head++];
+            for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                int id = Stencil.MOVEMENT.cell(m, cur % width, cur / width, width, height);
+                if (id < 0 || distance[id] >= 0 || field.isDanger(id)) continue;
+                distance[id] = distance[cur] + 1;
+                queue[tail++] = id;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Estimates the number of steps from the cell to the target using landmarks.
+     * @param x x-coordinate of the cell.
+     * @param y y-coordinate of the cell.
+     * @param targetX x-coordinate of the target.
+     * @param targetY y-coordinate of the target.
+     * @param hasCloak Does Harry have invisibility cloak in the cell.
+     * @return lower bound of the number of steps, not less than Chebyshev distance.
+     */
+    @Override
+    public int estimate(int x, int y, int targetX, int targetY, boolean hasCloak) {
+        int chebyshev = CHEBYSHEV.estimate(x, y, targetX, targetY, hasCloak);
+        if (hasCloak)
+            return chebyshev;
+        int cell = y * width + x, target = targetY * width + targetX;
+        int bound = Math.max(chebyshev, getBound(cell, target));
+        if (cloak >= 0 && cell != cloak) {
+            int throughCloak = Math.max(CHEBYSHEV.estimate(x, y, cloak % width, cloak / width, false),
+                    getBound(cell, cloak)) + CHEBYSHEV.estimate(cloak % width, cloak / width, targetX, targetY, true);
+            bound = Math.min(bound, throughCloak);
+        }
+        return bound;
+    }
+
+    /**
+     * Calculates the best landmark bound of the distance between cells without cloak.
+     * @param a Index of the first cell.
+     * @param b Index of the second cell.
+     * @return lower bound of the distance, 0 if no landmark reaches both cells.
+     */
+    private int getBound(int a, int b) {
+        int bound = 0;
+        for (int[] distance : distances) {
+            if (distance[a] >= 0 && distance[b] >= 0)
+                bound = Math.max(bound, Math.abs(distance[a] - distance[b]));
+        }
+        return bound;
+    }
+
+    /**
+     * Returns the number of landmarks.
+     * @return the number of landmarks.
+     */
+    public int size() {
+        return distances.length;
+    }
+
+    @Override
+    public String toString() {
+        return "ALT " + distances.length;
+    }
+}
@@ -0,0 +1,222 @@
+package algorithm;
+
+import agents.*;
+import game.Field;
+
+/**
+ * Single-pass search over the layered state space.
+ * Each state is a cell together with two flags: does Harry have the book and does he have the invisibility cloak,
+ * so the field is copied into 4 layers. Stepping on the book or on the cloak moves Harry to the next layer.
+ * All variants (Book -> Exit, Book -> Cloak -> Exit, Cloak -> Book -> Exit) are covered by one Dijkstra search
+ * with one OPEN heap, the first polled exit state with the book is the shortest path.
+ * Harry learns the field only through his visibility zone, like in the other algorithms. When a cell becomes known,
+ * it is relaxed from already expanded neighbours, and if the current cell has no known cell to move on,
+ * the algorithm makes blindStep().
+ */
+public class LayeredSearch extends Algorithm {
+    /**
+     * Flags of the layer: Harry has invisibility cloak, Harry has the book.
+     */
+    private static final int CLOAK = 1, BOOK = 2;
+    /**
+     * Number of layers (all combinations of the flags).
+     */
+    private static final int LAYERS = 4;
+
+    /**
+     * Creates the algorithm for any field.
+     */
+    public LayeredSearch() {
+        super();
+    }
+
+    /**
+     * Creates the algorithm bound to the field.
+     * @param field The game field.
+     */
+    public LayeredSearch(Field field) {
+        super(field);
+    }
+
+    /**
+     * Finding optimal (minimal) path using one search over all layers.
+     * @param field The game field.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
+     * @throws NoPathException If there is no path or algorithm cannot find it.
+     */
+    @Override
+    public void getMinimalPath(Field field, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException {
+        SearchWorkspace ws = SearchWorkspace.borrow(field, LAYERS);
+        try {
+            new Search(ws, statistics).run(harry, sink);
+        } finally {
+            ws.release();
+        }
+    }
+
+    /**
+     * State of one call of the search.
+     * States are indexed by cell << 2 | layer. Costs, previous states, closed states and OPEN are kept
+     * in the workspace (see SearchWorkspace), the state without cost means that Harry does not know the cell.
+     */
+    private class Search {
+        final Field field;                      // the game field.
+        final int width, height;                // size of the game field.
+        final SearchStatistics statistics;      // counters of the call.
+        final SearchWorkspace ws;               // known states of all layers.
+        final IndexedHeap open;                 // OPEN heap of states.
+
+        Search(SearchWorkspace ws, SearchStatistics statistics) {
+            this.field = ws.field();
+            this.width = field.getWidth();
+            this.height = field.getHeight();
+            this.statistics = statistics;
+            this.ws = ws;
+            this.open = ws.open();
+        }
+
+        /**
+         * Looks for the shortest path from Harry to the exit with the book.
+         * @param harry Starting point.
+         * @param sink Receiver of the path to end point.
+         * @throws NoPathException If there is no path or algorithm cannot find it.
+         */
+        void run(Harry harry, PathSink sink) throws NoPathException {
+            statistics.startPhase();
+
+            Stencil visibility = harry.getVisibilityStencil();
+
+            int start = field.index(harry.x, harry.y);
+            reveal(start);
+            ws.set(start << 2, 0, -1, false);
+            open.push(start << 2, 0);
+            statistics.pushed();
+            boolean needBook = true;
+
+            while (!open.isEmpty()) {
+                int state = open.poll();
+                int cur = state >>> 2, layer = state & 3;
+                int curX = cur % width, curY = cur / width;
+                statistics.expanded();
+
+                if (needBook && (layer & BOOK) != 0) {
+                    needBook = false;
+                    statistics.bookFound();
+                    statistics.endPhase(SearchStatistics.PHASE_BOOK);
+                }
+                if ((layer & BOOK) != 0 && field.is(cur, Field.EXIT)) {
+                    writePath(sink, state);
+                    statistics.endPhase(SearchStatistics.PHASE_EXIT);
+                    return;
+                }
+                ws.close(state);
+
+                // Harry looks around, new cells are relaxed from all expanded neighbours
+                for (int v = 0; v < visibility.size(); v++) {
+                    int id = visibility.cell(v, curX, curY, width, height);
+                    if (id >= 0)
+                        reveal(id);
+                }
+
+                // Move on known cells
+                boolean unknown = false, canMove = false;
+                for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                    int id = Stencil.MOVEMENT.cell(m, curX, curY, width, height);
+                    if (id < 0) continue;
+                    if (!ws.hasCost(id << 2))
+                        unknown = true;
+                    else
+                        canMove |= relax(state, id);
+                }
+                // Move on unknown cell, Harry sees the cell when he steps on it
+                if (!canMove && unknown) {
+                    statistics.blindStep();
+                    int nextMove = blindStep(curX, curY, width, height, (x, y) -> ws.cost((y * width + x) << 2 | layer));
+                    if (nextMove >= 0)
+                        reveal(nextMove);
+                }
+            }
+            statistics.endPhase(needBook ? SearchStatistics.PHASE_BOOK : SearchStatistics.PHASE_EXIT);
+            throw new NoPathException();
+        }
+
+        /**
+         * Marks the cell as known in all layers and relaxes it from the expanded neighbours.
+         * Bad cells of the layer get Integer.MIN_VALUE cost, other cells are unreached (Integer.MAX_VALUE).
+         * @param cell Index of the cell.
+         */
+        private void reveal(int cell) {
+            if (ws.hasCost(cell << 2))
+                return;
+            for (int layer = 0; layer < LAYERS; layer++) {
+                boolean blocked = field.isBlocked(cell, (layer & CLOAK) != 0);
+                ws.set(cell << 2 | layer, blocked ? Integer.MIN_VALUE : Integer.MAX_VALUE, -1, false);
+            }
+            int x = cell % width, y = cell / width;
+            for (int layer = 0; layer < LAYERS; layer++) {
+                for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                    int id = Stencil.MOVEMENT.cell(m, x, y, width, height);
+                    if (id >= 0 && ws.isClosed(id << 2 | layer))
+                        relax(id << 2 | layer, cell);
+                }
+            }
+        }
+
+        /**
+         * Moves Harry from the state to the known neighbouring cell.
+         * Stepping on the book or on the cloak moves Harry to the layer with the object.
+         * Expanded state is opened again if its cost is decreased (it happens when the cell is seen late).
+         * @param from Current state of Harry.
+         * @param cell Index of the neighbouring cell.
+         * @return true if the neighbour is not blocked for Harry.
+         */
+        private boolean relax(int from, int cell) {
+            int layer = from & 3, next = layer;
+            if (field.is(cell, Field.BOOK))
+                next |= BOOK;
+            if (field.is(cell, Field.CLOAK))
+                next |= CLOAK;
+            int state = cell << 2 | next;
+            int cost = ws.cost(state), fromCost = ws.cost(from);
+            if (cost == Integer.MIN_VALUE)
+                return false;
+            if (fromCost + 1 < cost) {
+                if (open.contains(state)) {
+                    open.update(state, fromCost + 1);     // Decrease-key in OPEN
+                    statistics.updated();
+                } else {
+                    if (cost == Integer.MAX_VALUE && (next & ~layer & CLOAK) != 0)
+                        statistics.cloakPicked();
+                    ws.reopen(state);
+                    open.push(state, fromCost + 1);
+                    statistics.pushed();
+                }
+                ws.set(state, fromCost + 1, from, false);
+            }
+            return true;
+        }
+
+        /**
+         * Writes the path to the state by links to previous states.
+         * @param sink Receiver of the path.
+         * @param last The last state of the path.
+         */
+        private void writePath(PathSink sink, int last) {
+            int length = 0;
+            for (int state = last; state >= 0; state = ws.parent(state))
+                length++;
+            sink.begin(length, width);
+            for (int state = last; state >= 0; state = ws.parent(state))
+                sink.set(--length, state >>> 2);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Layered Search";
+    }
+}
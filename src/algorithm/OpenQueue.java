@@ -0,0 +1,170 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * OPEN of A*: binary min-heap over cell indices which polls cells in exactly the same order as
+ * java.util.PriorityQueue of the cells did, so the found paths and the number of expanded cells do not change.
+ * Therefore, the heap repeats the quirks of the old queue instead of IndexedHeap's decrease-key:
+ * <ul>
+ * <li>the cell can be added several times (e.g. by the blind step), each entry is polled separately;</li>
+ * <li>the key is kept for the cell, not for the entry, so all entries of the cell see its current key;</li>
+ * <li>update polls the entries up to the cell and adds them back in the polled order;</li>
+ * <li>rebuild adds all entries back in the order of the heap array.</li>
+ * </ul>
+ * Equal keys are not ordered by anything else, their order depends only on the history of the heap.
+ */
+class OpenQueue {
+    private int[] heap;             // Entries (cells) ordered as a binary heap.
+    private final int[] count;      // Number of entries of each cell.
+    private final long[] keys;      // Current priority of each cell.
+    private final IntStack polled = new IntStack();     // Entries which are polled and added back.
+    private int size;
+
+    /**
+     * Creates an empty heap.
+     * @param capacity Maximum cell + 1 (amount of cells on the field).
+     */
+    OpenQueue(int capacity) {
+        this.heap = new int[capacity];
+        this.count = new int[capacity];
+        this.keys = new long[capacity];
+    }
+
+    /**
+     * Returns the maximum cell + 1 which can be added.
+     * @return capacity of the heap.
+     */
+    int capacity() {
+        return count.length;
+    }
+
+    /**
+     * Returns true if there are no entries in the heap.
+     * @return true if there are no entries in the heap.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks if the cell has at least one entry in the heap.
+     * @param cell Cell to check.
+     * @return true if the cell is in the heap, false otherwise.
+     */
+    boolean contains(int cell) {
+        return count[cell] > 0;
+    }
+
+    /**
+     * Returns the cell with minimal key without removing it.
+     * @return the cell with minimal key, -1 if the heap is empty.
+     */
+    int peek() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+     * Adds the entry of the cell, the cell may already be in the heap.
+     * @param cell Cell to add.
+     * @param key New priority of the cell, it is also used by the entries which are already in the heap.
+     */
+    void push(int cell, long key) {
+        keys[cell] = key;
+        add(cell);
+    }
+
+    /**
+     * Changes the key of the cell and restores the order like the old queue did:
+     * polls the entries up to the first entry of the cell and adds them back.
+     * @param cell Cell to update.
+     * @param key New priority of the cell.
+     */
+    void update(int cell, long key) {
+        keys[cell] = key;
+        polled.drop(polled.size());
+        while (size > 0) {
+            int entry = poll();
+            polled.push(entry);
+            if (entry == cell)
+                break;
+        }
+        for (int i = 0; i < polled.size(); i++)
+            add(polled.get(i));
+    }
+
+    /**
+     * Removes and returns the cell with minimal key.
+     * @return the cell with minimal key, -1 if the heap is empty.
+     */
+    int poll() {
+        if (size == 0)
+            return -1;
+        int top = heap[0];
+        count[top]--;
+        int last = heap[--size];
+        if (size > 0)
+            siftDown(0, last);
+        return top;
+    }
+
+    /**
+     * Removes all entries from the heap.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++)
+            count[heap[i]] = 0;
+        size = 0;
+    }
+
+    /**
+     * Changes keys of all cells in the heap and adds the entries back in the order of the heap array.
+     * @param newKeys Function which calculates new key of the cell.
+     */
+    void rebuild(IndexedHeap.KeyFunction newKeys) {
+        polled.drop(polled.size());
+        for (int i = 0; i < size; i++) {
+            polled.push(heap[i]);
+            keys[heap[i]] = newKeys.key(heap[i]);
+        }
+        clear();
+        for (int i = 0; i < polled.size(); i++)
+            add(polled.get(i));
+    }
+
+    /**
+     * Adds the entry of the cell with its current key.
+     * @param cell Cell to add.
+     */
+    private void add(int cell) {
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        count[cell]++;
+        siftUp(size++, cell);
+    }
+
+    private void siftUp(int i, int cell) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[cell] >= keys[heap[parent]])
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = cell;
+    }
+
+    private void siftDown(int i, int cell) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[heap[child]] > keys[heap[child + 1]])
+                child++;
+            if (keys[cell] <= keys[heap[child]])
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = cell;
+    }
+}
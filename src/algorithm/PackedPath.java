@@ -0,0 +1,81 @@
+package algorithm;
+
+import agents.Path;
+
+import java.util.Arrays;
+
+/**
+ * Path packed into an array of cell indexes (cell = y * width + x).
+ * The object can be reused for many searches: the array grows only when a longer path is written,
+ * so callers which need only the number of steps do not allocate anything per search.
+ */
+public class PackedPath implements PathSink {
+    private int[] cells = new int[16];  // cells of the path, only the first size values are used.
+    private int size;                   // number of cells in the path.
+    private int width;                  // width of the field.
+
+    @Override
+    public void begin(int length, int width) {
+        if (cells.length < length)
+            cells = new int[Math.max(length, cells.length * 2)];
+        this.size = length;
+        this.width = width;
+    }
+
+    @Override
+    public void set(int index, int cell) {
+        cells[index] = cell;
+    }
+
+    /**
+     * Returns the number of cells in the path.
+     * @return the number of cells including the start.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of steps of Harry.
+     * @return the number of cells without the start.
+     */
+    public int getSteps() {
+        return size - 1;
+    }
+
+    /**
+     * Returns the cell of the path.
+     * @param index Position of the cell in the path, 0 is the start.
+     * @return index of the cell: y * width + x.
+     */
+    public int getCell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Returns width of the field of the path.
+     * @return width of the field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Copies the cells of the path.
+     * @return array with indexes of the cells.
+     */
+    public int[] toCells() {
+        return Arrays.copyOf(cells, size);
+    }
+
+    /**
+     * Converts the path to the objects.
+     * @return Array with a path.
+     */
+    public Path[] toArray() {
+        Path[] path = new Path[size];
+        for (int i = 0; i < size; i++)
+            path[i] = new Path(cells[i] % width, cells[i] / width);
+        return path;
+    }
+}
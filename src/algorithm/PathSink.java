@@ -0,0 +1,22 @@
+package algorithm;
+
+/**
+ * Receiver of the path found by the algorithm.
+ * Cells are written by index (cell = y * width + x), so the algorithm can write the path in any order,
+ * e.g. from the target back to the start by links to previous cells, without intermediate lists.
+ */
+public interface PathSink {
+    /**
+     * Called once before the cells of the path are written.
+     * @param length Number of cells in the path including the start (the number of steps + 1).
+     * @param width Width of the field.
+     */
+    void begin(int length, int width);
+
+    /**
+     * Writes the cell of the path.
+     * @param index Position of the cell in the path, 0 is the start.
+     * @param cell Index of the cell: y * width + x.
+     */
+    void set(int index, int cell);
+}
@@ -0,0 +1,222 @@
+package algorithm;
+
+import agents.*;
+import game.Field;
+import game.PatrolTable;
+
+import java.util.*;
+
+/**
+ * Time-expanded search against the inspectors which follow known patrol routes (see game.PatrolTable).
+ * The state is the cell, the tick modulo period of the patrol and the layer (has book, has cloak) like in
+ * LayeredSearch. Harry can step on the neighbouring cell or wait in the current one, and he cannot be
+ * in the cell which is watched at the tick of his arrival (the cell with the inspector is watched even with the cloak).
+ * All moves take one tick, A* with Chebyshev heuristics (to the book, then to the exit) finds the path with
+ * the earliest arrival to the exit. Each state is expanded once (the tick is taken modulo period),
+ * therefore, the search stops even if the exit cannot be reached.
+ * Harry knows the schedule of the patrol, the visibility zone is not used.
+ */
+public class PatrolSearch extends Algorithm {
+    /**
+     * Flags of the layer: Harry has invisibility cloak, Harry has the book.
+     */
+    private static final int CLOAK = 1, BOOK = 2;
+    /**
+     * Number of layers (all combinations of the flags).
+     */
+    private static final int LAYERS = 4;
+
+    private final PatrolTable patrol;   // cells watched by the inspectors at each tick.
+    private final int width;            // width of the patrol table and of the game fields.
+    private final int height;           // height of the patrol table and of the game fields.
+
+    /**
+     * Creates the search with the patrol for any field of the same size.
+     * Only the book, the cloak and the exit are taken from the field of the call.
+     * @param patrol Reservation table of the inspectors.
+     * @throws IncorrectDataException If the state space is too large.
+     */
+    public PatrolSearch(PatrolTable patrol) throws IncorrectDataException {
+        this(null, patrol);
+    }
+
+    /**
+     * Creates the search bound to the field with the patrol.
+     * @param field The game field, null if the search is not bound to a field.
+     * @param patrol Reservation table of the inspectors on this field.
+     * @throws IncorrectDataException If the table has another size or the state space is too large.
+     */
+    public PatrolSearch(Field field, PatrolTable patrol) throws IncorrectDataException {
+        super(field);
+        if (field != null && (field.getWidth() != patrol.getWidth() || field.getHeight() != patrol.getHeight()))
+            throw new IncorrectDataException("The patrol table does not match the field.");
+        if ((long) patrol.getWidth() * patrol.getHeight() * patrol.getPeriod() * LAYERS > Integer.MAX_VALUE)
+            throw new IncorrectDataException("Too many states for the period " + patrol.getPeriod());
+        this.patrol = patrol;
+        this.width = patrol.getWidth();
+        this.height = patrol.getHeight();
+    }
+
+    /**
+     * Finding the path with the earliest arrival to the exit with the book.
+     * Harry starts at tick 0, the path contains his position at each tick (the cell is repeated when he waits).
+     * @param field The game field of the same size as the patrol table.
+     * @param harry Starting point.
+     * @param exit End point. It is necessary to find a book first.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
+     * @throws NoPathException If there is no path.
+     * @throws IncorrectDataException If the patrol table does not match the field.
+     */
+    @Override
+    public void getMinimalPath(Field field, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+            throws NoPathException, IncorrectDataException {
+        if (field.getWidth() != width || field.getHeight() != height)
+            throw new IncorrectDataException("The patrol table does not match the field.");
+        statistics.startPhase();
+        int cells = width * height, period = patrol.getPeriod();
+        int book = -1;
+        for (int cell = 0; cell < cells && book < 0; cell++) {
+            if (field.is(cell, Field.BOOK))
+                book = cell;
+        }
+        int target = field.index(exit.x, exit.y);
+
+        // States are indexed by (tick % period * cells + cell) << 2 | layer.
+        // Entries of the search are never removed, so the path is restored by the positions of the parents.
+        BitSet closed = new BitSet();
+        IntStack states = new IntStack(cells);      // state of each entry.
+        IntStack times = new IntStack(cells);       // tick of arrival of each entry.
+        IntStack parents = new IntStack(cells);     // position of the previous entry.
+        // All steps cost 1 tick, so OPEN is a list of buckets by f = time + heuristics (starting from f of the start)
+        ArrayList<IntStack> open = new ArrayList<>();
+
+        int start = field.index(harry.x, harry.y);
+        if (book < 0 || patrol.isBlocked(start, 0, false)) {
+            statistics.endPhase(SearchStatistics.PHASE_EXIT);
+            throw new NoPathException();
+        }
+        int first = start << 2 | getObjects(field, start);
+        int offset = getHeuristic(first & 3, start, book, target);
+        push(open, 0, first, 0, -1, states, times, parents, statistics);
+
+        for (int f = 0; f < open.size(); f++) {
+            IntStack bucket = open.get(f);
+            while (bucket.size() > 0) {
+                int entry = bucket.pop();
+                int state = states.get(entry);
+                if (closed.get(state)) continue;
+                closed.set(state);
+                statistics.expanded();
+                int layer = state & 3, cell = (state >>> 2) % cells, time = times.get(entry);
+                if ((layer & BOOK) != 0 && cell == target) {
+                    writePath(states, parents, entry, sink, statistics);
+                    statistics.endPhase(SearchStatistics.PHASE_EXIT);
+                    return;
+                }
+
+                int tick = (time + 1) % period;
+                for (int m = 0; m <= Stencil.MOVEMENT.size(); m++) {
+                    // The last move is waiting in the cell
+                    int id = m < Stencil.MOVEMENT.size()
+                            ? Stencil.MOVEMENT.cell(m, cell % width, cell / width, width, height) : cell;
+                    if (id < 0 || patrol.isBlocked(id, tick, (layer & CLOAK) != 0)) continue;
+                    int nextLayer = layer | getObjects(field, id);
+                    int next = (tick * cells + id) << 2 | nextLayer;
+                    if (closed.get(next)) continue;
+                    int nextF = time + 1 + getHeuristic(nextLayer, id, book, target) - offset;
+                    push(open, nextF, next, time + 1, entry, states, times, parents, statistics);
+                }
+            }
+        }
+        statistics.endPhase(SearchStatistics.PHASE_EXIT);
+        throw new NoPathException();
+    }
+
+    /**
+     * Adds the entry to the search and puts it to the bucket of OPEN.
+     * @param open Buckets of OPEN by f.
+     * @param f Bucket of the entry.
+     * @param state State of the entry.
+     * @param time Tick of arrival to the state.
+     * @param parent Position of the previous entry, -1 for the start.
+     * @param states States of all entries.
+     * @param times Ticks of all entries.
+     * @param parents Previous entries of all entries.
+     * @param statistics Counters of the search.
+     */
+    private static void push(ArrayList<IntStack> open, int f, int state, int time, int parent,
+                             IntStack states, IntStack times, IntStack parents, SearchStatistics statistics) {
+        while (open.size() <= f)
+            open.add(new IntStack());
+        open.get(f).push(states.size());
+        states.push(state);
+        times.push(time);
+        parents.push(parent);
+        statistics.pushed();
+    }
+
+    /**
+     * Number of steps on the empty field (Chebyshev distance) to the book and then to the exit.
+     * @param layer Layer of the state.
+     * @param cell Index of the cell.
+     * @param book Index of the cell with the book.
+     * @param exit Index of the cell with the exit.
+     * @return lower bound of the number of ticks to the exit with the book.
+     */
+    private int getHeuristic(int layer, int cell, int book, int exit) {
+        if ((layer & BOOK) != 0)
+            return getDistance(cell, exit);
+        return getDistance(cell, book) + getDistance(book, exit);
+    }
+
+    /**
+     * Number of steps between cells on the empty field (Chebyshev distance).
+     * @param a Index of the first cell.
+     * @param b Index of the second cell.
+     * @return lower bound of the distance between cells.
+     */
+    private int getDistance(int a, int b) {
+        return Math.max(Math.abs(a % width - b % width), Math.abs(a / width - b / width));
+    }
+
+    /**
+     * Returns flags of the layers for the objects in the cell.
+     * @param field The game field.
+     * @param cell Index of the cell.
+     * @return BOOK and (or) CLOAK flags of the cell.
+     */
+    private static int getObjects(Field field, int cell) {
+        return (field.is(cell, Field.BOOK) ? BOOK : 0) | (field.is(cell, Field.CLOAK) ? CLOAK : 0);
+    }
+
+    /**
+     * Restores the path by positions of the previous entries.
+     * @param states States of all entries.
+     * @param parents Previous entries of all entries.
+     * @param last Position of the exit entry.
+     * @param sink Receiver of the path to end point.
+     * @param statistics Counters of the search.
+     */
+    private void writePath(IntStack states, IntStack parents, int last, PathSink sink, SearchStatistics statistics) {
+        int length = 0;
+        for (int i = last; i >= 0; i = parents.get(i))
+            length++;
+        sink.begin(length, width);
+        int cells = width * height;
+        for (int i = last; i >= 0; i = parents.get(i)) {
+            int state = states.get(i);
+            sink.set(--length, (state >>> 2) % cells);
+            int parent = parents.get(i);
+            if (parent >= 0 && (state & ~states.get(parent) & BOOK) != 0)
+                statistics.bookFound();
+            if (parent >= 0 && (state & ~states.get(parent) & CLOAK) != 0)
+                statistics.cloakPicked();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Patrol Search";
+    }
+}
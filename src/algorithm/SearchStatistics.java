@@ -0,0 +1,206 @@
+package algorithm;
+
+/**
+ * Counters of the search collected by the algorithm during getMinimalPath().
+ * Counters are added on each call, so one object can aggregate several solves.
+ * Not thread-safe: use one object per thread and aggregate them with add().
+ * NONE is used by default and does not count anything.
+ */
+public class SearchStatistics {
+    /**
+     * Disabled statistics, all counters stay zero.
+     */
+    public static final SearchStatistics NONE = new SearchStatistics(false);
+
+    /**
+     * Phase of the search while Harry is looking for the book.
+     */
+    public static final int PHASE_BOOK = 0;
+    /**
+     * Phase of the search while Harry is looking for the exit with the book.
+     */
+    public static final int PHASE_EXIT = 1;
+
+    private final boolean enabled;
+    private long nodesExpanded;     // cells taken from OPEN (A*) or from the stack (Backtracking).
+    private long heapPushes;        // cells added to OPEN.
+    private long heapUpdates;       // decrease-key operations in OPEN.
+    private long blindSteps;        // calls of blindStep().
+    private long booksFound;        // transitions to the phase of looking for the exit.
+    private long cloaksPicked;      // times when Harry has put on invisibility cloak.
+    private final long[] phaseNanos = new long[2];
+    private long phaseStart;        // time when the current phase has started.
+
+    public SearchStatistics() {
+        this(true);
+    }
+
+    private SearchStatistics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Counts the expanded cell.
+     */
+    void expanded() {
+        if (enabled) nodesExpanded++;
+    }
+
+    /**
+     * Counts the cell added to OPEN.
+     */
+    void pushed() {
+        if (enabled) heapPushes++;
+    }
+
+    /**
+     * Counts decrease-key operation in OPEN.
+     */
+    void updated() {
+        if (enabled) heapUpdates++;
+    }
+
+    /**
+     * Counts the call of blindStep().
+     */
+    void blindStep() {
+        if (enabled) blindSteps++;
+    }
+
+    /**
+     * Counts the transition to the phase of looking for the exit.
+     */
+    void bookFound() {
+        if (enabled) booksFound++;
+    }
+
+    /**
+     * Counts that Harry has put on invisibility cloak.
+     */
+    void cloakPicked() {
+        if (enabled) cloaksPicked++;
+    }
+
+    /**
+     * Starts measuring time of the phase.
+     */
+    void startPhase() {
+        if (enabled) phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Adds time from the start of the phase to the given phase and starts the next one.
+     * @param phase PHASE_BOOK or PHASE_EXIT.
+     */
+    void endPhase(int phase) {
+        if (enabled) {
+            long now = System.nanoTime();
+            phaseNanos[phase] += now - phaseStart;
+            phaseStart = now;
+        }
+    }
+
+    /**
+     * Adds counters of other statistics to this one.
+     * @param other Statistics to add.
+     * @return this statistics.
+     */
+    public SearchStatistics add(SearchStatistics other) {
+        if (enabled) {
+            nodesExpanded += other.nodesExpanded;
+            heapPushes += other.heapPushes;
+            heapUpdates += other.heapUpdates;
+            blindSteps += other.blindSteps;
+            booksFound += other.booksFound;
+            cloaksPicked += other.cloaksPicked;
+            phaseNanos[PHASE_BOOK] += other.phaseNanos[PHASE_BOOK];
+            phaseNanos[PHASE_EXIT] += other.phaseNanos[PHASE_EXIT];
+        }
+        return this;
+    }
+
+    /**
+     * Sets all counters to zero.
+     */
+    public void reset() {
+        nodesExpanded = heapPushes = heapUpdates = blindSteps = booksFound = cloaksPicked = 0;
+        phaseNanos[PHASE_BOOK] = phaseNanos[PHASE_EXIT] = 0;
+    }
+
+    /**
+     * Returns true if the statistics counts anything.
+     * @return false for NONE, true otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of expanded cells.
+     * @return the number of expanded cells.
+     */
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Returns the number of cells added to OPEN.
+     * @return the number of cells added to OPEN.
+     */
+    public long getHeapPushes() {
+        return heapPushes;
+    }
+
+    /**
+     * Returns the number of decrease-key operations in OPEN.
+     * @return the number of decrease-key operations in OPEN.
+     */
+    public long getHeapUpdates() {
+        return heapUpdates;
+    }
+
+    /**
+     * Returns the number of calls of blindStep().
+     * @return the number of calls of blindStep().
+     */
+    public long getBlindSteps() {
+        return blindSteps;
+    }
+
+    /**
+     * Returns how many times the book was found (transitions to the phase of looking for the exit).
+     * @return the number of found books.
+     */
+    public long getBooksFound() {
+        return booksFound;
+    }
+
+    /**
+     * Returns how many times Harry has put on invisibility cloak.
+     * @return the number of picked cloaks.
+     */
+    public long getCloaksPicked() {
+        return cloaksPicked;
+    }
+
+    /**
+     * Returns working time of the algorithm in the phase.
+     * @param phase PHASE_BOOK or PHASE_EXIT.
+     * @return working time in nanoseconds.
+     */
+    public long getPhaseNanos(int phase) {
+        return phaseNanos[phase];
+    }
+
+    /**
+     * Returns statistics in the following format:
+     * nodes=10 pushes=12 updates=3 blindSteps=1 books=1 cloaks=0 bookNanos=1000 exitNanos=2000
+     * @return String representation of the statistics.
+     */
+    @Override
+    public String toString() {
+        return "nodes=" + nodesExpanded + " pushes=" + heapPushes + " updates=" + heapUpdates
+                + " blindSteps=" + blindSteps + " books=" + booksFound + " cloaks=" + cloaksPicked
+                + " bookNanos=" + phaseNanos[PHASE_BOOK] + " exitNanos=" + phaseNanos[PHASE_EXIT];
+    }
+}
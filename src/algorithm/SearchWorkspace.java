@@ -0,0 +1,407 @@
+package algorithm;
+
+import game.Field;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reusable arrays of one search over the cells of the field: cost, previous cell and cloak of each cell,
+ * heuristics, closed and blocked cells, the OPEN heap and the stack for the path.
+ * Searches over layers of the field (e.g. has book, has cloak) index the arrays by states: cell * layers + layer.
+ * Arrays are not cleared: each group of values is stamped by the epoch in which it was written,
+ * and values with an old stamp are treated as not written. So the search forgets a group
+ * (e.g. costs and closed cells after the book is found) in O(1) by starting a new epoch.
+ * Searches which keep every found path (Backtracking) link nodes of the path tree instead of states,
+ * because a state may later get another path while the old one is still used. Nodes and stacks are kept per layer,
+ * so passes over different layers may work in different threads.
+ * <p>
+ * Searches borrow workspaces from the bounded pool and return them when they finish, so the arrays are reused
+ * by any thread, including short-lived (virtual) threads of the server. Each workspace grows to the largest field
+ * it was used for. If all workspaces are busy, a new one is created, and it is dropped on return
+ * if the pool is already full.
+ */
+final class SearchWorkspace implements Algorithm.CostMap {
+    /**
+     * Maximum number of idle workspaces, more searches than processors rarely run at once.
+     */
+    private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+    private static final Queue<SearchWorkspace> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    /**
+     * Epochs which one search may start, the stamps are cleared before the counter overflows.
+     */
+    private static final int EPOCHS_PER_SEARCH = 64;
+
+    private Field field;                // field of the current search.
+    private int width, capacity;        // width of the current field, maximal number of states.
+    private int[] cost, parent, estimate;
+    private boolean[] cloak;            // Harry has invisibility cloak in the cell.
+    private int[] costStamp, estimateStamp, closedStamp, blockedStamp;
+    private int[] blocked;              // number of times the cell was marked as blocked.
+    private int epoch;                  // the last started epoch.
+    private int costEpoch, estimateEpoch, closedEpoch, blockedEpoch;
+    private IndexedHeap open;
+    private OpenQueue queue;            // OPEN of A star, created on the first use.
+    private final IntStack path = new IntStack();
+    private IntStack[] nodes = new IntStack[0];     // nodes of each layer: cell, cost, previous node, flags.
+    private IntStack[] stacks = new IntStack[0];    // stack of each layer.
+    private int layers;                 // number of states of each cell.
+
+    private SearchWorkspace() {
+    }
+
+    /**
+     * Takes the workspace from the pool and prepares it for the new search over the cells of the field.
+     * @param field Field of the search.
+     * @return the workspace which is not used by other searches.
+     */
+    static SearchWorkspace borrow(Field field) {
+        return borrow(field, 1);
+    }
+
+    /**
+     * Takes the workspace from the pool and prepares it for the new search: all groups are forgotten,
+     * OPEN and the path are empty. The search must release() the workspace when it finishes.
+     * @param field Field of the search.
+     * @param layers Number of states of each cell.
+     * @return the workspace which is not used by other searches.
+     */
+    static SearchWorkspace borrow(Field field, int layers) {
+        SearchWorkspace workspace = POOL.poll();
+        if (workspace == null)
+            workspace = new SearchWorkspace();
+        workspace.start(field, field.getWidth() * field.getHeight() * layers, layers);
+        return workspace;
+    }
+
+    /**
+     * Returns the workspace to the pool. The field is forgotten, so the pool does not keep it alive.
+     * The workspace must not be used after this call.
+     */
+    void release() {
+        field = null;
+        POOL.offer(this);
+    }
+
+    /**
+     * Grows the arrays if needed and starts new epochs of all groups.
+     * @param field Field of the search.
+     * @param states Number of states of the search.
+     * @param layers Number of states of each cell.
+     */
+    private void start(Field field, int states, int layers) {
+        this.field = field;
+        this.width = field.getWidth();
+        this.layers = layers;
+        if (layers > nodes.length) {
+            int old = nodes.length;
+            nodes = Arrays.copyOf(nodes, layers);
+            stacks = Arrays.copyOf(stacks, layers);
+            for (int layer = old; layer < layers; layer++) {
+                nodes[layer] = new IntStack();
+                stacks[layer] = new IntStack();
+            }
+        }
+        for (int layer = 0; layer < layers; layer++) {
+            nodes[layer].drop(nodes[layer].size());
+            stacks[layer].drop(stacks[layer].size());
+        }
+        if (states > capacity) {
+            capacity = states;
+            cost = new int[states];
+            parent = new int[states];
+            estimate = new int[states];
+            cloak = new boolean[states];
+            costStamp = new int[states];
+            estimateStamp = new int[states];
+            closedStamp = new int[states];
+            blockedStamp = new int[states];
+            blocked = new int[states];
+            open = new IndexedHeap(states);
+            queue = null;
+            epoch = 0;
+        } else if (epoch > Integer.MAX_VALUE - EPOCHS_PER_SEARCH) {
+            Arrays.fill(costStamp, 0);
+            Arrays.fill(estimateStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            Arrays.fill(blockedStamp, 0);
+            epoch = 0;
+        }
+        open.clear();
+        if (queue != null)
+            queue.clear();
+        path.drop(path.size());
+        forgetCosts();
+        forgetEstimates();
+        forgetClosed();
+        blockedEpoch = ++epoch;
+    }
+
+    /**
+     * Forgets costs, previous cells and cloaks of all cells.
+     */
+    void forgetCosts() {
+        costEpoch = ++epoch;
+    }
+
+    /**
+     * Forgets heuristics of all cells.
+     */
+    void forgetEstimates() {
+        estimateEpoch = ++epoch;
+    }
+
+    /**
+     * Makes all cells not closed.
+     */
+    void forgetClosed() {
+        closedEpoch = ++epoch;
+    }
+
+    /**
+     * Checks if the cost of the cell was written after the last forgetCosts().
+     * @param cell Index of the cell.
+     * @return true if the cell has cost, previous cell and cloak.
+     */
+    boolean hasCost(int cell) {
+        return costStamp[cell] == costEpoch;
+    }
+
+    /**
+     * Returns the cost of the cell.
+     * @param cell Index of the cell.
+     * @return the written cost, otherwise Integer.MIN_VALUE for blocked cell and Integer.MAX_VALUE for other cells.
+     */
+    int cost(int cell) {
+        if (costStamp[cell] == costEpoch)
+            return cost[cell];
+        return isBlocked(cell) ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the previous cell of the path to the cell.
+     * @param cell Index of the cell.
+     * @return index of the previous cell, -1 if there is no previous cell.
+     */
+    int parent(int cell) {
+        return costStamp[cell] == costEpoch ? parent[cell] : -1;
+    }
+
+    /**
+     * Returns the cloak of Harry in the cell.
+     * @param cell Index of the cell.
+     * @param unknown Value for the cell without written cost.
+     * @return true if Harry has invisibility cloak in the cell.
+     */
+    boolean hasCloak(int cell, boolean unknown) {
+        return costStamp[cell] == costEpoch ? cloak[cell] : unknown;
+    }
+
+    /**
+     * Writes the cost, the previous cell and the cloak of the cell.
+     * @param cell Index of the cell.
+     * @param cost Movement cost to the cell.
+     * @param parent Previous cell, -1 if there is no previous cell.
+     * @param hasCloak Does Harry have invisibility cloak in the cell.
+     */
+    void set(int cell, int cost, int parent, boolean hasCloak) {
+        this.cost[cell] = cost;
+        this.parent[cell] = parent;
+        this.cloak[cell] = hasCloak;
+        costStamp[cell] = costEpoch;
+    }
+
+    /**
+     * Checks if the heuristics of the cell was written after the last forgetEstimates().
+     * @param cell Index of the cell.
+     * @return true if the cell has heuristics.
+     */
+    boolean hasEstimate(int cell) {
+        return estimateStamp[cell] == estimateEpoch;
+    }
+
+    /**
+     * Returns the written heuristics of the cell, see hasEstimate().
+     * @param cell Index of the cell.
+     * @return the heuristics.
+     */
+    int estimate(int cell) {
+        return estimate[cell];
+    }
+
+    /**
+     * Writes the heuristics of the cell.
+     * @param cell Index of the cell.
+     * @param value Estimated distance to the target.
+     */
+    void setEstimate(int cell, int value) {
+        estimate[cell] = value;
+        estimateStamp[cell] = estimateEpoch;
+    }
+
+    /**
+     * Checks if the cell is closed.
+     * @param cell Index of the cell.
+     * @return true if the cell was closed after the last forgetClosed().
+     */
+    boolean isClosed(int cell) {
+        return closedStamp[cell] == closedEpoch;
+    }
+
+    /**
+     * Closes the cell.
+     * @param cell Index of the cell.
+     */
+    void close(int cell) {
+        closedStamp[cell] = closedEpoch;
+    }
+
+    /**
+     * Makes the closed cell not closed, e.g. when a shorter path to it is found.
+     * @param cell Index of the cell.
+     */
+    void reopen(int cell) {
+        closedStamp[cell] = 0;
+    }
+
+    /**
+     * Checks if the cell is known as blocked in this search.
+     * @param cell Index of the cell.
+     * @return true if the cell has at least one mark.
+     */
+    boolean isBlocked(int cell) {
+        return blockedStamp[cell] == blockedEpoch && blocked[cell] > 0;
+    }
+
+    /**
+     * Adds the blocked mark to the cell. Marks are counted like the entries of the old list of blocked cells,
+     * so the cell marked twice stays blocked after one unblock().
+     * @param cell Index of the cell.
+     */
+    void block(int cell) {
+        if (blockedStamp[cell] != blockedEpoch) {
+            blockedStamp[cell] = blockedEpoch;
+            blocked[cell] = 0;
+        }
+        blocked[cell]++;
+    }
+
+    /**
+     * Removes one blocked mark of the cell.
+     * @param cell Index of the cell, it must be blocked.
+     */
+    void unblock(int cell) {
+        blocked[cell]--;
+    }
+
+    /**
+     * Adds the node of the path tree to the layer.
+     * @param layer Layer of the node, only one thread may add nodes to the layer.
+     * @param cell Index of the cell (or the state).
+     * @param cost Movement cost to the cell.
+     * @param previous Previous node of the path, -1 if there is no previous node.
+     * @return the node, its flags are 0.
+     */
+    int addNode(int layer, int cell, int cost, int previous) {
+        IntStack layerNodes = nodes[layer];
+        int node = layerNodes.size() / 4 * layers + layer;
+        layerNodes.push(cell);
+        layerNodes.push(cost);
+        layerNodes.push(previous);
+        layerNodes.push(0);
+        return node;
+    }
+
+    /**
+     * Returns the cell of the node.
+     * @param node The node.
+     * @return index of the cell (or the state).
+     */
+    int nodeCell(int node) {
+        return nodes[node % layers].get(node / layers * 4);
+    }
+
+    /**
+     * Returns the movement cost of the node.
+     * @param node The node.
+     * @return movement cost to the cell of the node.
+     */
+    int nodeCost(int node) {
+        return nodes[node % layers].get(node / layers * 4 + 1);
+    }
+
+    /**
+     * Returns the previous node of the path.
+     * @param node The node.
+     * @return the previous node, -1 if there is no previous node.
+     */
+    int nodePrevious(int node) {
+        return nodes[node % layers].get(node / layers * 4 + 2);
+    }
+
+    /**
+     * Returns the flags which the search wrote for the node.
+     * @param node The node.
+     * @return the flags, 0 for the new node.
+     */
+    int nodeFlags(int node) {
+        return nodes[node % layers].get(node / layers * 4 + 3);
+    }
+
+    /**
+     * Writes the flags of the node.
+     * @param node The node.
+     * @param flags Flags of the search.
+     */
+    void setNodeFlags(int node, int flags) {
+        nodes[node % layers].set(node / layers * 4 + 3, flags);
+    }
+
+    /**
+     * Returns the stack of the layer.
+     * @param layer The layer.
+     * @return the stack, empty at the start of the search.
+     */
+    IntStack stack(int layer) {
+        return stacks[layer];
+    }
+
+    /**
+     * Returns the field of the search.
+     * @return the field passed to borrow().
+     */
+    Field field() {
+        return field;
+    }
+
+    /**
+     * Returns the OPEN heap of the search.
+     * @return the heap over the cells (states) of the field.
+     */
+    IndexedHeap open() {
+        return open;
+    }
+
+    /**
+     * Returns OPEN of A star, which keeps the order of the old priority queue (see OpenQueue).
+     * @return the queue over the cells of the field.
+     */
+    OpenQueue queue() {
+        if (queue == null || queue.capacity() < capacity)
+            queue = new OpenQueue(capacity);
+        return queue;
+    }
+
+    /**
+     * Returns the stack for the cells of the path.
+     * @return the empty stack at the start of the search.
+     */
+    IntStack path() {
+        return path;
+    }
+
+    @Override
+    public int getCost(int x, int y) {
+        return cost(y * width + x);
+    }
+}
@@ -0,0 +1,251 @@
+package game;
+
+import algorithm.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Headless mode of the game: generates seeded random games and launches all registered algorithms on them
+ * using all available processors. Nothing is printed to the console, results are returned as objects.
+ * Usage from the console (prints one RunResult per line):
+ * <pre>
+ * java game.BatchSimulator count scenario [seed] [width height]
+ * </pre>
+ */
+public class BatchSimulator {
+    /**
+     * Maximum number of games which is played by one task without splitting.
+     */
+    private static final int GAMES_PER_TASK = 8;
+
+    private final int width, height, scenario;
+    private final List<String> names = new ArrayList<>();                            // names of the algorithms.
+    private final List<Function<Field, Algorithm>> factories = new ArrayList<>();    // creators of the algorithms.
+    private final ForkJoinPool pool;
+    private boolean collectStatistics = true;   // collect counters of the search for each run.
+    private SolutionCache cache;                // cache of the found paths, null if it is not used.
+
+    public BatchSimulator(int width, int height, int scenario) throws IncorrectDataException {
+        this(width, height, scenario, ForkJoinPool.commonPool());
+    }
+
+    public BatchSimulator(int width, int height, int scenario, ForkJoinPool pool) throws IncorrectDataException {
+        if (scenario != 1 && scenario != 2)
+            throw new IncorrectDataException("Expected values for scenario: 1 and 2. Given: " + scenario);
+        if (width <= 0 || height <= 0)
+            throw new IncorrectDataException("Width and height of the field must be positive. Given: "
+                    + width + " " + height);
+        this.width = width;
+        this.height = height;
+        this.scenario = scenario;
+        this.pool = pool;
+    }
+
+    /**
+     * Adds the algorithm to the batch. New instance of the algorithm is created for each game,
+     * so the algorithms are not shared between threads.
+     * @param name Name of the algorithm in the results.
+     * @param factory Creates the algorithm for the given field.
+     * @return this simulator.
+     */
+    public BatchSimulator register(String name, Function<Field, Algorithm> factory) {
+        names.add(name);
+        factories.add(factory);
+        return this;
+    }
+
+    /**
+     * Enables or disables collecting of the counters of the search.
+     * Disabled counters do not affect working time of the algorithms, RunResult then contains SearchStatistics.NONE.
+     * @param collect true to collect counters (default), false otherwise.
+     * @return this simulator.
+     */
+    public BatchSimulator collectStatistics(boolean collect) {
+        this.collectStatistics = collect;
+        return this;
+    }
+
+    /**
+     * Sets the cache of the found paths shared by all runs. Results taken from the cache have empty counters.
+     * @param cache Cache for the fields of the batch size, null to solve every game.
+     * @return this simulator.
+     */
+    public BatchSimulator useCache(SolutionCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Sums up counters of the search for each algorithm.
+     * @param results Results of the batch.
+     * @return Map from the name of the algorithm to its total counters, in registration order.
+     */
+    public static Map<String, SearchStatistics> aggregate(List<RunResult> results) {
+        Map<String, SearchStatistics> total = new LinkedHashMap<>();
+        for (RunResult result : results)
+            total.computeIfAbsent(result.algorithm, name -> new SearchStatistics()).add(result.statistics);
+        return total;
+    }
+
+    /**
+     * Compares results of each algorithm with the optimal paths.
+     * @param results Results of the batch.
+     * @return Map from the name of the algorithm to its gap from the optimum, in registration order.
+     */
+    public static Map<String, OptimalityGap> gaps(List<RunResult> results) {
+        Map<String, OptimalityGap> gaps = new LinkedHashMap<>();
+        for (RunResult result : results)
+            gaps.computeIfAbsent(result.algorithm, name -> new OptimalityGap()).add(result);
+        return gaps;
+    }
+
+    /**
+     * Generates the games and launches all registered algorithms on each game.
+     * @param count Number of games.
+     * @param seed Seed of the batch. The same seed gives the same games.
+     * @return Results ordered by game and then by registration order of the algorithms.
+     * @throws IncorrectDataException If the games cannot be generated, e.g. the field is too small.
+     */
+    public List<RunResult> run(int count, long seed) throws IncorrectDataException {
+        long[] seeds = new long[count];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < count; i++)
+            seeds[i] = random.nextLong();
+
+        RunResult[] results = new RunResult[count * factories.size()];
+        GamesTask task = new GamesTask(seeds, results, 0, count);
+        pool.invoke(task);
+        if (task.error != null)
+            throw task.error;
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Plays the game with all registered algorithms.
+     * If the algorithm fails with an unexpected exception, its result gets the error flag and the batch goes on.
+     * @param index Index of the game in the batch.
+     * @param seed Seed of the game.
+     * @param generator Generator of the games of the task.
+     * @param oracle Oracle of the task which finds the optimal number of steps.
+     * @param results Array where to put the results.
+     * @throws IncorrectDataException If the game cannot be generated.
+     */
+    private void play(int index, long seed, FieldGenerator generator, OptimalOracle oracle, RunResult[] results)
+            throws IncorrectDataException {
+        Game game = generator.reseed(seed).next(scenario);
+        int optimal = oracle.getMinimalSteps(game);
+        PackedPath packed = new PackedPath();     // only the number of steps is needed without the cache.
+        for (int i = 0; i < factories.size(); i++) {
+            RunResult result;
+            if (game.isBadField()) {
+                result = new RunResult(index, seed, names.get(i), true, false, false, -1, -1, 0,
+                        SearchStatistics.NONE);
+            } else {
+                Algorithm algorithm = factories.get(i).apply(game.getField());
+                SearchStatistics statistics = collectStatistics ? new SearchStatistics() : SearchStatistics.NONE;
+                long time = System.nanoTime();
+                int steps;
+                boolean error = false;
+                try {
+                    if (cache == null) {
+                        algorithm.getMinimalPath(game.getField(), game.getHarry(), game.getExit(), packed,
+                                statistics);
+                        steps = packed.getSteps();
+                    } else {
+                        steps = cache.getMinimalPath(game, algorithm).length - 1;
+                    }
+                } catch (NoPathException e) {
+                    steps = -1;
+                } catch (RuntimeException e) {
+                    // The failure of one algorithm on one game does not stop the batch
+                    steps = -1;
+                    error = true;
+                }
+                time = System.nanoTime() - time;
+                result = new RunResult(index, seed, names.get(i), false, error, steps >= 0, steps, optimal, time,
+                        statistics);
+            }
+            results[index * factories.size() + i] = result;
+        }
+    }
+
+    /**
+     * Task which plays the range of games, splits the range if it is too big.
+     */
+    private class GamesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] seeds;
+        private final RunResult[] results;
+        private final int from, to;                 // range of the games [from, to).
+        private IncorrectDataException error;       // first error of the task and its subtasks.
+
+        GamesTask(long[] seeds, RunResult[] results, int from, int to) {
+            this.seeds = seeds;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                GamesTask left = new GamesTask(seeds, results, from, middle);
+                GamesTask right = new GamesTask(seeds, results, middle, to);
+                invokeAll(left, right);
+                error = left.error != null ? left.error : right.error;
+                return;
+            }
+            try {
+                FieldGenerator generator = new FieldGenerator(width, height, 0);
+                OptimalOracle oracle = new OptimalOracle();
+                for (int i = from; i < to; i++)
+                    play(i, seeds[i], generator, oracle, results);
+            } catch (IncorrectDataException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Launches the batch from the console and prints the results.
+     * @param args count scenario [seed] [width height]
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length < 2)
+                throw new IncorrectDataException("Expected arguments: count scenario [seed] [width height]");
+            int count, scenario, width = Game.SIZE, height = Game.SIZE;
+            long seed = System.nanoTime();
+            try {
+                count = Integer.parseInt(args[0]);
+                scenario = Integer.parseInt(args[1]);
+                if (args.length >= 3)
+                    seed = Long.parseLong(args[2]);
+                if (args.length >= 5) {
+                    width = Integer.parseInt(args[3]);
+                    height = Integer.parseInt(args[4]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IncorrectDataException("Arguments must be integers. Given: " + String.join(" ", args));
+            }
+
+            BatchSimulator simulator = new BatchSimulator(width, height, scenario)
+                    .register("Backtracking", Backtracking::new)
+                    .register("AStar", AStar::new)
+                    .register("LayeredSearch", LayeredSearch::new)
+                    .register("JumpPointSearch", JumpPointSearch::new);
+            StringBuilder sb = new StringBuilder();
+            for (RunResult result : simulator.run(count, seed))
+                sb.append(result).append('\n');
+            System.out.print(sb);
+        } catch (IncorrectDataException e) {
+            System.out.println("Sorry, but input data is incorrect");
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package game;
+
+import algorithm.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves all games of the memory-mapped ScenarioCorpus in parallel chunks and writes the results
+ * to the binary file. Each chunk keeps one buffer of results and one PackedPath for all its games
+ * and writes the buffer by one positional write, so chunks do not wait for each other.
+ * <p>
+ * Layout of the results (little-endian):
+ * <pre>
+ * header:  magic, version, width, height (int each), number of records (long), padding to 32 bytes
+ * records: 4 bytes for each game of the corpus in the same order: bits 0-2 - status, bits 3-31 - number of steps
+ * </pre>
+ * Usage from the console:
+ * <pre>
+ * java game.BulkSolver corpus results [algorithm]
+ * </pre>
+ */
+public class BulkSolver {
+    static final int MAGIC = 0x48505352;                // "HPSR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 4;
+
+    /**
+     * The path is found.
+     */
+    public static final int WIN = 1;
+    /**
+     * The algorithm has not found the path.
+     */
+    public static final int LOSE = 2;
+    /**
+     * Harry starts in the perception zone.
+     */
+    public static final int BAD_FIELD = 3;
+    /**
+     * The record of the corpus is corrupted.
+     */
+    public static final int CORRUPTED = 4;
+    /**
+     * The algorithm failed on the game with an unexpected error (a bug of the algorithm, not a lost game),
+     * the other games are still solved.
+     */
+    public static final int ERROR = 5;
+
+    /**
+     * Maximum number of games which is solved by one task without splitting.
+     */
+    private static final int GAMES_PER_TASK = 4096;
+
+    private final Algorithm algorithm;  // one instance shared by all tasks, the field is passed to each call.
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates the solver.
+     * @param algorithm Algorithm for all games, it is called from all threads of the pool at once.
+     * @param pool Pool for parallel solving.
+     */
+    public BulkSolver(Algorithm algorithm, ForkJoinPool pool) {
+        this.algorithm = algorithm;
+        this.pool = pool;
+    }
+
+    /**
+     * Solves all games of the corpus.
+     * @param corpusFile Name of the file created by ScenarioCorpus.Writer.
+     * @param resultFile Name of the file for results, existing file is replaced.
+     * @return the number of games with each status, indexed by status.
+     * @throws IOException If the files cannot be read or written.
+     */
+    public long[] solve(String corpusFile, String resultFile) throws IOException {
+        try (ScenarioCorpus corpus = ScenarioCorpus.open(corpusFile);
+             RandomAccessFile file = new RandomAccessFile(resultFile, "rw")) {
+            file.setLength(HEADER_SIZE + corpus.size() * RECORD_SIZE);
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(corpus.getWidth()).putInt(corpus.getHeight())
+                    .putLong(corpus.size());
+            header.clear();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+
+            ChunkTask task = new ChunkTask(corpus, channel, 0, corpus.size());
+            pool.invoke(task);
+            if (task.error != null)
+                throw task.error;
+            return task.statuses;
+        }
+    }
+
+    /**
+     * Solves the range of games and writes their results.
+     * @param corpus Corpus of the games.
+     * @param channel File of the results.
+     * @param from The first game.
+     * @param to The last game (exclusive).
+     * @param statuses Counters of the statuses of the chunk.
+     * @throws IOException If the file cannot be written.
+     */
+    private void solveChunk(ScenarioCorpus corpus, FileChannel channel, long from, long to, long[] statuses)
+            throws IOException {
+        ByteBuffer records = ByteBuffer.allocate((int) (to - from) * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        PackedPath path = new PackedPath();
+        for (long i = from; i < to; i++) {
+            int status, steps = 0;
+            try {
+                Game game = corpus.getGame(i);
+                if (game.isBadField()) {
+                    status = BAD_FIELD;
+                } else {
+                    algorithm.getMinimalPath(game.getField(), game.getHarry(), game.getExit(), path,
+                            SearchStatistics.NONE);
+                    status = WIN;
+                    steps = path.getSteps();
+                }
+            } catch (NoPathException e) {
+                status = LOSE;
+            } catch (IncorrectDataException e) {
+                status = CORRUPTED;
+            } catch (RuntimeException e) {
+                status = ERROR;
+            }
+            statuses[status]++;
+            records.putInt(steps << 3 | status);
+        }
+        records.flip();
+        long position = HEADER_SIZE + from * RECORD_SIZE;
+        while (records.hasRemaining())
+            position += channel.write(records, position);
+    }
+
+    /**
+     * Reads the status from the record of the results.
+     * @param record Record of the game.
+     * @return WIN, LOSE, BAD_FIELD, CORRUPTED or ERROR.
+     */
+    public static int getStatus(int record) {
+        return record & 7;
+    }
+
+    /**
+     * Reads the number of steps from the record of the results.
+     * @param record Record of the game.
+     * @return the number of steps if status is WIN, 0 otherwise.
+     */
+    public static int getSteps(int record) {
+        return record >>> 3;
+    }
+
+    /**
+     * Returns the algorithms which can be chosen by name from the console or by SolverServer.
+     * The algorithms are not bound to a field, so each of them can be shared by all threads.
+     * @return the algorithms by their class names.
+     */
+    static Map<String, Algorithm> getAlgorithms() {
+        Map<String, Algorithm> algorithms = new LinkedHashMap<>();
+        algorithms.put("Backtracking", new Backtracking());
+        algorithms.put("AStar", new AStar());
+        algorithms.put("LayeredSearch", new LayeredSearch());
+        algorithms.put("JumpPointSearch", new JumpPointSearch());
+        return algorithms;
+    }
+
+    /**
+     * Task which solves the range of games, splits the range if it is too big.
+     */
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ScenarioCorpus corpus;
+        private final FileChannel channel;
+        private final long from, to;                    // range of the games [from, to).
+        private final long[] statuses = new long[ERROR + 1];
+        private IOException error;                      // first error of the task and its subtasks.
+
+        ChunkTask(ScenarioCorpus corpus, FileChannel channel, long from, long to) {
+            this.corpus = corpus;
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GAMES_PER_TASK) {
+                long middle = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(corpus, channel, from, middle);
+                ChunkTask right = new ChunkTask(corpus, channel, middle, to);
+                invokeAll(left, right);
+                error = left.error != null ? left.error : right.error;
+                for (int i = 0; i < statuses.length; i++)
+                    statuses[i] = left.statuses[i] + right.statuses[i];
+                return;
+            }
+            try {
+                solveChunk(corpus, channel, from, to, statuses);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Launches the solver from the console and prints the number of games with each status.
+     * @param args corpus results [algorithm]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Expected arguments: corpus results [Backtracking|AStar|LayeredSearch|JumpPointSearch]");
+            return;
+        }
+        Map<String, Algorithm> algorithms = getAlgorithms();
+        String name = args.length >= 3 ? args[2] : "AStar";
+        if (!algorithms.containsKey(name)) {
+            System.out.println("Unknown algorithm: " + name + ". Expected one of " + algorithms.keySet());
+            return;
+        }
+        try {
+            long time = System.currentTimeMillis();
+            long[] statuses = new BulkSolver(algorithms.get(name), ForkJoinPool.commonPool()).solve(args[0], args[1]);
+            System.out.println("Win: " + statuses[WIN] + ", lose: " + statuses[LOSE] + ", bad field: "
+                    + statuses[BAD_FIELD] + ", corrupted: " + statuses[CORRUPTED] + ", error: " + statuses[ERROR]);
+            System.out.println("Time: " + (System.currentTimeMillis() - time) + " ms");
+        } catch (IOException e) {
+            System.out.println("Error while solving the corpus: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package game;
+
+import agents.*;
+import algorithm.IncorrectDataException;
+
+import java.util.*;
+
+/**
+ * Field of the game where the inspectors (Filch and Mrs. Norris) patrol the library.
+ * Each cell keeps the number of perception zones which cover it, so moving one inspector
+ * changes only the cells of its old and new zones. The algorithms are notified about the changed cells,
+ * e.g. DStarLite repairs only the affected part of the search.
+ * Note: the field moves its own copies of the inspectors (see getInspectors()), the agents of the game are not changed.
+ */
+public class DynamicField extends Field {
+    private final byte[] objects;       // flags of the book, the cloak and the exit.
+    private final int[] watchers;       // number of perception zones covering the cell.
+    private final List<BadAgent> inspectors = new ArrayList<>();
+    private final Harry harry;          // Harry of the game, the inspectors cannot step on his cell.
+
+    /**
+     * Creates the field with the same agents as in the game. The inspectors are copied.
+     * @param game Game with positions of all agents.
+     */
+    public DynamicField(Game game) {
+        super(game.getWidth(), game.getHeight());
+        this.objects = new byte[game.getWidth() * game.getHeight()];
+        this.watchers = new int[objects.length];
+        objects[index(game.getBook().x, game.getBook().y)] |= BOOK;
+        objects[index(game.getCloak().x, game.getCloak().y)] |= CLOAK;
+        objects[index(game.getExit().x, game.getExit().y)] |= EXIT;
+        this.harry = game.getHarry();
+        inspectors.add(new Filch(game.getFilch().x, game.getFilch().y));
+        inspectors.add(new Cat(game.getCat().x, game.getCat().y));
+        for (BadAgent inspector : inspectors)
+            watch(inspector, 1);
+        for (int cell = 0; cell < objects.length; cell++)
+            set(cell, getFlags(cell));
+    }
+
+    /**
+     * Moves the inspector to the new cell and updates perception zones.
+     * @param inspector Filch or Mrs. Norris of this field (see getInspectors()).
+     * @param x New x-coordinate of the inspector.
+     * @param y New y-coordinate of the inspector.
+     * @return Indexes of the cells which became blocked or free (for Harry with or without cloak).
+     * @throws IncorrectDataException If the inspector is not on this field or the cell is outside of the field
+     * or it is occupied by another agent (including Harry).
+     */
+    public int[] moveInspector(BadAgent inspector, int x, int y) throws IncorrectDataException {
+        if (!isInspector(inspector))
+            throw new IncorrectDataException("The inspector is not on the field: [" + inspector.x + "," + inspector.y + "]");
+        if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight())
+            throw new IncorrectDataException("Position of the inspector is outside of the field: [" + x + "," + y + "]");
+        int target = index(x, y);
+        if (objects[target] != 0 || harry.x == x && harry.y == y
+                || is(target, INSPECTOR) && (inspector.x != x || inspector.y != y))
+            throw new IncorrectDataException("The cell is occupied by another agent: [" + x + "," + y + "]");
+
+        int oldX = inspector.x, oldY = inspector.y;
+        watch(inspector, -1);
+        inspector.x = x;
+        inspector.y = y;
+        watch(inspector, 1);
+
+        // Only cells of the old and new zones can change, overlapping cells are updated once
+        int[] changed = new int[2 * inspector.perception * inspector.perception];
+        int count = update(oldX, oldY, inspector.perception / 2, changed, 0);
+        count = update(x, y, inspector.perception / 2, changed, count);
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Checks that the agent is one of the inspectors of this field. Agents are compared by reference,
+     * because equals() also matches the agents of the game which stand in the same cell.
+     * @param agent Agent to check.
+     * @return true if the agent is the copy returned by getInspectors(), false otherwise.
+     */
+    private boolean isInspector(BadAgent agent) {
+        for (BadAgent inspector : inspectors) {
+            if (inspector == agent)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recalculates flags of the cells in the square zone.
+     * @param centerX x-coordinate of the center of the zone.
+     * @param centerY y-coordinate of the center of the zone.
+     * @param step Radius of the zone.
+     * @param changed Array where to put the cells whose danger was changed.
+     * @param count The number of cells already in the array.
+     * @return the number of cells in the array.
+     */
+    private int update(int centerX, int centerY, int step, int[] changed, int count) {
+        for (int y = Math.max(centerY - step, 0); y <= Math.min(centerY + step, getHeight() - 1); y++) {
+            for (int x = Math.max(centerX - step, 0); x <= Math.min(centerX + step, getWidth() - 1); x++) {
+                int cell = index(x, y);
+                byte flags = getFlags(cell), old = get(cell);
+                if (flags == old) continue;
+                set(cell, flags);
+                if (((flags ^ old) & (INSPECTOR | PERCEPTION)) != 0)
+                    changed[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds or removes the perception zone of the inspector to the counters of the cells.
+     * @param inspector Inspector.
+     * @param delta 1 to add the zone, -1 to remove it.
+     */
+    private void watch(BadAgent inspector, int delta) {
+        int step = inspector.perception / 2;
+        for (int y = Math.max(inspector.y - step, 0); y <= Math.min(inspector.y + step, getHeight() - 1); y++) {
+            for (int x = Math.max(inspector.x - step, 0); x <= Math.min(inspector.x + step, getWidth() - 1); x++)
+                watchers[index(x, y)] += delta;
+        }
+    }
+
+    /**
+     * Calculates flags of the cell from the objects and the current positions of the inspectors.
+     * Objects covered by the perception zone are also marked as perception zone.
+     * @param cell Index of the cell.
+     * @return flags of the cell.
+     */
+    private byte getFlags(int cell) {
+        for (BadAgent inspector : inspectors) {
+            if (index(inspector.x, inspector.y) == cell)
+                return INSPECTOR;
+        }
+        return (byte) (objects[cell] | (watchers[cell] > 0 ? PERCEPTION : 0));
+    }
+
+    /**
+     * Returns inspectors which patrol the field, they are moved by moveInspector().
+     * @return copies of Filch and Mrs. Norris of the game (in this order).
+     */
+    public List<BadAgent> getInspectors() {
+        return Collections.unmodifiableList(inspectors);
+    }
+}
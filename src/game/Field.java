@@ -0,0 +1,161 @@
+package game;
+
+import agents.BadAgent;
+
+/**
+ * Compact representation of the game field.
+ * Each cell is a byte of flags, cells are stored row by row: index = y * width + x.
+ * Danger of the cells is also kept in bitboards (bit of the cell = cell % 64 in the long cell / 64),
+ * so that the algorithms check it with a single bit operation. E.g. 9x9 field takes 2 longs.
+ */
+public class Field {
+    /**
+     * Cell with inspector (Filch or Mrs. Norris). Harry cannot step on it even with invisibility cloak.
+     */
+    public static final byte INSPECTOR = 1;
+    /**
+     * Perception zone of the inspector. Harry can step on it only with invisibility cloak.
+     */
+    public static final byte PERCEPTION = 1 << 1;
+    /**
+     * Cell with a book.
+     */
+    public static final byte BOOK = 1 << 2;
+    /**
+     * Cell with invisibility cloak.
+     */
+    public static final byte CLOAK = 1 << 3;
+    /**
+     * Cell with exit.
+     */
+    public static final byte EXIT = 1 << 4;
+
+    private final int width, height;
+    private final byte[] cells;
+    private final long[] danger;        // cells with inspector or perception zone (blocked without cloak).
+    private final long[] inspectors;    // cells with inspector (blocked with cloak).
+
+    public Field(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.cells = new byte[width * height];
+        this.danger = new long[(width * height + 63) >>> 6];
+        this.inspectors = new long[danger.length];
+    }
+
+    /**
+     * Returns width of the field.
+     * @return width of the field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns height of the field.
+     * @return height of the field.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns index of the cell with given coordinates.
+     * @param x x-coordinate of the cell.
+     * @param y y-coordinate of the cell.
+     * @return index of the cell.
+     */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Returns flags of the cell.
+     * @param cell Index of the cell.
+     * @return flags of the cell, 0 if the cell is empty.
+     */
+    public byte get(int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * Checks if the cell has at least one of the given flags.
+     * @param cell Index of the cell.
+     * @param flags Flags to check, e.g. BOOK or INSPECTOR | PERCEPTION.
+     * @return true if the cell has at least one of the flags, false otherwise.
+     */
+    public boolean is(int cell, int flags) {
+        return (cells[cell] & flags) != 0;
+    }
+
+    /**
+     * Checks if Harry cannot step on the cell.
+     * @param cell Index of the cell.
+     * @param hasCloak Does Harry have invisibility cloak.
+     * @return true if the cell is inspector or (without cloak) perception zone of the inspector.
+     */
+    public boolean isBlocked(int cell, boolean hasCloak) {
+        return ((hasCloak ? inspectors : danger)[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    /**
+     * Checks if the cell is inspector or perception zone of the inspector.
+     * @param cell Index of the cell.
+     * @return true if Harry cannot step on the cell without invisibility cloak.
+     */
+    public boolean isDanger(int cell) {
+        return (danger[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    /**
+     * Returns the bitboard of the cells on which Harry cannot step. The array must not be changed.
+     * @param hasCloak Does Harry have invisibility cloak.
+     * @return bits of the cells with inspector or (without cloak) perception zone of the inspector.
+     */
+    long[] getBlocked(boolean hasCloak) {
+        return hasCloak ? inspectors : danger;
+    }
+
+    /**
+     * Replaces flags of the cell.
+     * @param cell Index of the cell.
+     * @param flags New flags of the cell.
+     */
+    void set(int cell, byte flags) {
+        cells[cell] = flags;
+        setBit(danger, cell, (flags & (INSPECTOR | PERCEPTION)) != 0);
+        setBit(inspectors, cell, (flags & INSPECTOR) != 0);
+    }
+
+    /**
+     * Sets or clears the bit of the cell in the bitboard.
+     * @param bits Bitboard.
+     * @param cell Index of the cell.
+     * @param value New value of the bit.
+     */
+    private static void setBit(long[] bits, int cell, boolean value) {
+        if (value) bits[cell >>> 6] |= 1L << cell;
+        else bits[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * Marks perception zone of the inspector on the field except the given cell.
+     * @param agent Inspector.
+     * @param except Index of the cell which must not be marked (position of Harry).
+     * @return true if the perception zone contains the excluded cell.
+     */
+    boolean markPerception(BadAgent agent, int except) {
+        boolean found = false;
+        int step = agent.perception / 2;
+        int fromX = Math.max(agent.x - step, 0), toX = Math.min(agent.x + step, width - 1);
+        int fromY = Math.max(agent.y - step, 0), toY = Math.min(agent.y + step, height - 1);
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                int cell = y * width + x;
+                if (cell == except) found = true;
+                else set(cell, PERCEPTION);
+            }
+        }
+        return found;
+    }
+}
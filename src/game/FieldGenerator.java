@@ -0,0 +1,247 @@
+package game;
+
+import agents.*;
+import algorithm.IncorrectDataException;
+
+import java.util.*;
+
+/**
+ * Seeded generator of random games with the same rules as the console input:
+ * Harry starts from [0,0], the inspectors are placed on any free cell, the book, the cloak and the exit
+ * are placed outside of the perception zones. The same seed always gives the same sequence of games.
+ * <p>
+ * Free cells are kept in an array with the position of each cell, so a cell is sampled and removed
+ * by one swap with the last free cell. Only the swapped positions are restored after the game,
+ * so generation does not depend on the size of the field.
+ * Not thread-safe: use split() to get an independent generator for each thread.
+ */
+public class FieldGenerator {
+    /**
+     * Maximal number of placements of the inspectors for one game when bad fields are skipped.
+     */
+    private static final int MAX_ATTEMPTS = 1000;
+
+    private final int width, height;
+    private final int[] cells;          // free cells in [0, free), removed cells after them.
+    private final int[] positions;      // index of each cell in cells.
+    private int free;                   // number of free cells.
+    private int[] touched = new int[64];    // positions changed by the current game.
+    private int touchedSize;
+    private SplittableRandom random;
+    private boolean skipBadFields;      // do not return games where Harry starts in the perception zone.
+
+    /**
+     * Creates the generator of games on the field of the given size.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @param seed Seed of the sequence of games.
+     * @throws IncorrectDataException If the field is too small to place all agents.
+     */
+    public FieldGenerator(int width, int height, long seed) throws IncorrectDataException {
+        this(width, height, new SplittableRandom(seed));
+    }
+
+    private FieldGenerator(int width, int height, SplittableRandom random) throws IncorrectDataException {
+        if (width <= 0 || height <= 0 || width * height < 6)
+            throw new IncorrectDataException("The field " + width + "x" + height + " is too small to place all agents");
+        this.width = width;
+        this.height = height;
+        this.random = random;
+        this.cells = new int[width * height];
+        this.positions = new int[width * height];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i;
+            positions[i] = i;
+        }
+        this.free = cells.length;
+    }
+
+    /**
+     * Enables or disables skipping of the games where Harry starts in the perception zone of the inspector.
+     * Skipped placements of the inspectors are generated again, other agents are placed after them.
+     * @param skip true to return only games which are not lost on spawn, false to return all games (default).
+     * @return this generator.
+     */
+    public FieldGenerator skipBadFields(boolean skip) {
+        this.skipBadFields = skip;
+        return this;
+    }
+
+    /**
+     * Restarts the sequence of games from the seed, e.g. to generate the game by its seed again.
+     * @param seed Seed of the sequence of games.
+     * @return this generator.
+     */
+    public FieldGenerator reseed(long seed) {
+        this.random = new SplittableRandom(seed);
+        return this;
+    }
+
+    /**
+     * Creates the independent generator with the same settings. The sequence of games of the new generator
+     * is determined by the state of this one, so splits in the same order give the same games.
+     * @return the new generator.
+     */
+    public FieldGenerator split() {
+        try {
+            return new FieldGenerator(width, height, random.split()).skipBadFields(skipBadFields);
+        } catch (IncorrectDataException e) {
+            throw new IllegalStateException(e);     // the size was checked by this generator.
+        }
+    }
+
+    /**
+     * Generates the next game.
+     * @param scenario Scenario for Harry: 1 or 2.
+     * @return the game.
+     * @throws IncorrectDataException If the scenario is wrong or the agents cannot be placed.
+     */
+    public Game next(int scenario) throws IncorrectDataException {
+        try {
+            Harry harry = new Harry(0, 0, scenario);
+            for (int attempt = 0; ; attempt++) {
+                remove(0);
+                int cell = take();
+                Filch filch = new Filch(cell % width, cell / width);
+                cell = take();
+                Cat cat = new Cat(cell % width, cell / width);
+                boolean badField = removePerception(filch) | removePerception(cat);
+                if (badField && skipBadFields) {
+                    if (attempt == MAX_ATTEMPTS)
+                        throw new IncorrectDataException("The field " + width + "x" + height
+                                + " is too small to place inspectors away from Harry");
+                    restore();
+                    continue;
+                }
+                if (free < 3)
+                    throw new IncorrectDataException("The field " + width + "x" + height
+                            + " is too small to place all agents");
+
+                cell = take();
+                Book book = new Book(cell % width, cell / width);
+                cell = take();
+                Cloak cloak = new Cloak(cell % width, cell / width);
+                cell = take();
+                Exit exit = new Exit(cell % width, cell / width);
+                return new Game(width, height, harry, filch, cat, book, cloak, exit);
+            }
+        } finally {
+            restore();
+        }
+    }
+
+    /**
+     * Removes the random free cell.
+     * @return the removed cell.
+     */
+    private int take() {
+        int cell = cells[random.nextInt(free)];
+        remove(cell);
+        return cell;
+    }
+
+    /**
+     * Removes cells of the perception zone of the inspector (see BadAgent.getPerception()).
+     * @param inspector Filch or Mrs. Norris.
+     * @return true if Harry's cell [0,0] is in the perception zone.
+     */
+    private boolean removePerception(BadAgent inspector) {
+        int step = inspector.perception / 2;
+        for (int y = Math.max(inspector.y - step, 0); y <= Math.min(inspector.y + step, height - 1); y++) {
+            for (int x = Math.max(inspector.x - step, 0); x <= Math.min(inspector.x + step, width - 1); x++) {
+                int cell = y * width + x;
+                if (positions[cell] < free)
+                    remove(cell);
+            }
+        }
+        return inspector.x <= step && inspector.y <= step;
+    }
+
+    /**
+     * Moves the free cell behind the free ones by swapping it with the last free cell.
+     * @param cell Free cell.
+     */
+    private void remove(int cell) {
+        int position = positions[cell], last = cells[--free];
+        cells[position] = last;
+        positions[last] = position;
+        cells[free] = cell;
+        positions[cell] = free;
+        if (touchedSize + 2 > touched.length)
+            touched = Arrays.copyOf(touched, touched.length * 2);
+        touched[touchedSize++] = position;
+        touched[touchedSize++] = free;
+    }
+
+    /**
+     * Makes all cells free again by restoring the changed positions, so each game starts
+     * from the same order of cells.
+     */
+    private void restore() {
+        for (int i = 0; i < touchedSize; i++) {
+            int position = touched[i];
+            cells[position] = position;
+            positions[position] = position;
+        }
+        touchedSize = 0;
+        free = cells.length;
+    }
+
+    /**
+     * Generates games on all processors and prints the speed of the generator.
+     * Each thread gets its own split of the generator, the games are discarded.
+     * @param args count [seed] [width height]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Expected arguments: count [seed] [width height]");
+            return;
+        }
+        try {
+            long count = Long.parseLong(args[0]);
+            long seed = args.length >= 2 ? Long.parseLong(args[1]) : System.nanoTime();
+            int width = args.length >= 4 ? Integer.parseInt(args[2]) : Game.SIZE;
+            int height = args.length >= 4 ? Integer.parseInt(args[3]) : Game.SIZE;
+            FieldGenerator generator = new FieldGenerator(width, height, seed).skipBadFields(true);
+            int threads = Runtime.getRuntime().availableProcessors();
+            FieldGenerator[] splits = new FieldGenerator[threads];
+            for (int i = 0; i < threads; i++)
+                splits[i] = generator.split();
+
+            long time = System.nanoTime();
+            long[] exits = new long[threads];
+            Thread[] workers = new Thread[threads];
+            IncorrectDataException[] errors = new IncorrectDataException[threads];
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                long games = count / threads + (thread < count % threads ? 1 : 0);
+                workers[i] = new Thread(() -> {
+                    try {
+                        for (long j = 0; j < games; j++)
+                            exits[thread] += splits[thread].next((int) (j % 2) + 1).getExit().x;
+                    } catch (IncorrectDataException e) {
+                        errors[thread] = e;
+                    }
+                });
+                workers[i].start();
+            }
+            long checksum = 0;
+            for (int i = 0; i < threads; i++) {
+                workers[i].join();
+                if (errors[i] != null)
+                    throw errors[i];
+                checksum += exits[i];
+            }
+            time = System.nanoTime() - time;
+            System.out.println("Games: " + count + ", time: " + time / 1_000_000 + " ms, games per second: "
+                    + (long) (count * 1e9 / Math.max(time, 1)) + " (checksum " + checksum + ")");
+        } catch (NumberFormatException e) {
+            System.out.println("Arguments must be integers. Given: " + String.join(" ", args));
+        } catch (IncorrectDataException e) {
+            System.out.println("Sorry, but input data is incorrect");
+            System.out.println(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
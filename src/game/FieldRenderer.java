@@ -0,0 +1,228 @@
+package game;
+
+import agents.*;
+import algorithm.PackedPath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Renders the field of the game with the path of Harry.
+ * Cells of the path are marked in a bitset once, then the whole frame is put into one preallocated buffer
+ * (3 bytes per cell and a line separator per row), so the frame is printed by one write.
+ * For fields which are too large to read as text the frame can be saved as a PPM image.
+ * Not thread-safe: the buffers are reused by all frames.
+ */
+public class FieldRenderer {
+    /**
+     * Colors of the cells in the image (RGB) indexed by symbol.
+     */
+    private static final byte[][] COLORS = new byte[128][];
+
+    static {
+        COLORS['.'] = rgb(0xFFFFFF);    // empty cell.
+        COLORS['*'] = rgb(0xF4B6B6);    // perception zone.
+        COLORS['F'] = rgb(0xB00000);    // Filch.
+        COLORS['C'] = rgb(0x800080);    // Mrs. Norris.
+        COLORS['H'] = rgb(0xFF8C00);    // Harry.
+        COLORS['B'] = rgb(0x1E50D0);    // book.
+        COLORS['P'] = rgb(0x00A0A0);    // invisibility cloak.
+        COLORS['X'] = rgb(0x108010);    // exit.
+        COLORS['$'] = rgb(0xFFD700);    // path.
+    }
+
+    private final Game game;
+    private final Field field;
+    private final int width, height;
+    private final BitSet marked;        // cells of the current path.
+    private byte[] text;                // frame as text, allocated on the first use.
+
+    public FieldRenderer(Game game) {
+        this.game = game;
+        this.field = game.getField();
+        this.width = field.getWidth();
+        this.height = field.getHeight();
+        this.marked = new BitSet(width * height);
+    }
+
+    /**
+     * Puts the field with the path into the buffer, the top row (maximal y) goes first.
+     * @param path Array containing cells for minimal path to the exit with the book, null if there is no path.
+     * @return the number of bytes of the frame in getBuffer().
+     * @throws IllegalStateException If the field is too large to be printed as text.
+     */
+    public int render(Path[] path) {
+        mark(path);
+        try {
+            return render();
+        } finally {
+            unmark(path);
+        }
+    }
+
+    /**
+     * Puts the field with the packed path into the buffer, the top row (maximal y) goes first.
+     * @param path Packed path to the exit with the book, null if there is no path.
+     * @return the number of bytes of the frame in getBuffer().
+     * @throws IllegalStateException If the field is too large to be printed as text.
+     */
+    public int render(PackedPath path) {
+        if (path != null) {
+            for (int i = 0; i < path.size(); i++)
+                marked.set(path.getCell(i));
+        }
+        try {
+            return render();
+        } finally {
+            marked.clear();
+        }
+    }
+
+    /**
+     * Fills the text buffer by symbols of the cells and the marked path.
+     * @return the number of bytes of the frame.
+     */
+    private int render() {
+        int row = 3 * width + 1;
+        if ((long) row * height > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("The field " + width + "x" + height
+                    + " is too large to be printed, save it as an image.");
+        if (text == null)
+            text = new byte[row * height];
+        int pos = 0;
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = 0; x < width; x++) {
+                text[pos++] = ' ';
+                text[pos++] = (byte) getSymbol(x, y);
+                text[pos++] = ' ';
+            }
+            text[pos++] = '\n';
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the buffer with the last rendered frame.
+     * @return the text buffer, only the number of bytes returned by render() is used.
+     */
+    public byte[] getBuffer() {
+        return text;
+    }
+
+    /**
+     * Renders the field with the path and writes the frame to the channel, e.g. to the file.
+     * @param path Array containing cells for minimal path to the exit with the book, null if there is no path.
+     * @param channel Channel where to write the frame.
+     * @throws IOException If the channel cannot be written.
+     */
+    public void draw(Path[] path, WritableByteChannel channel) throws IOException {
+        int length = render(path);
+        write(channel, ByteBuffer.wrap(text, 0, length));
+    }
+
+    /**
+     * Saves the field with the path as a binary PPM image (P6), each cell is a square of scale x scale pixels.
+     * The image is written by rows of cells, so only one row is kept in memory.
+     * @param path Array containing cells for minimal path to the exit with the book, null if there is no path.
+     * @param channel Channel where to write the image.
+     * @param scale Size of the cell in pixels.
+     * @throws IOException If the channel cannot be written.
+     * @throws IllegalArgumentException If the scale is not positive or the image is too large.
+     */
+    public void writeImage(Path[] path, WritableByteChannel channel, int scale) throws IOException {
+        if (scale <= 0 || (long) width * scale * scale * 3 > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Incorrect scale of the image: " + scale);
+        mark(path);
+        try {
+            byte[] header = ("P6\n" + width * scale + " " + height * scale + "\n255\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            write(channel, ByteBuffer.wrap(header));
+            int line = width * scale * 3;
+            ByteBuffer row = ByteBuffer.allocate(line * scale);
+            byte[] pixels = row.array();
+            for (int y = height - 1; y >= 0; y--) {
+                int pos = 0;
+                for (int x = 0; x < width; x++) {
+                    byte[] color = COLORS[getSymbol(x, y)];
+                    for (int i = 0; i < scale; i++) {
+                        pixels[pos++] = color[0];
+                        pixels[pos++] = color[1];
+                        pixels[pos++] = color[2];
+                    }
+                }
+                for (int i = 1; i < scale; i++)
+                    System.arraycopy(pixels, 0, pixels, i * line, line);
+                row.clear();
+                write(channel, row);
+            }
+        } finally {
+            unmark(path);
+        }
+    }
+
+    /**
+     * Marks cells of the path.
+     * @param path Array containing cells of the path, null if there is no path.
+     */
+    private void mark(Path[] path) {
+        if (path == null) return;
+        for (Path p : path)
+            marked.set(field.index(p.x, p.y));
+    }
+
+    /**
+     * Removes marks of the path, only cells of the path are cleared.
+     * @param path Array containing cells of the path, null if there is no path.
+     */
+    private void unmark(Path[] path) {
+        if (path == null) return;
+        for (Path p : path)
+            marked.clear(field.index(p.x, p.y));
+    }
+
+    /**
+     * Returns representation of the cell on the field.
+     * @param x x-coordinate of the cell.
+     * @param y y-coordinate of the cell.
+     * @return '$' for the path, symbol of the agent in the cell, '*' for perception zone, '.' for empty cell.
+     */
+    private char getSymbol(int x, int y) {
+        int index = field.index(x, y);
+        if (marked.get(index)) return '$';
+        Harry harry = game.getHarry();
+        if (x == harry.x && y == harry.y) return harry.symbol;
+        Filch filch = game.getFilch();
+        if (x == filch.x && y == filch.y) return filch.symbol;
+        Cat cat = game.getCat();
+        if (x == cat.x && y == cat.y) return cat.symbol;
+        int cell = field.get(index);
+        if ((cell & Field.BOOK) != 0) return 'B';
+        if ((cell & Field.CLOAK) != 0) return 'P';
+        if ((cell & Field.EXIT) != 0) return 'X';
+        if ((cell & Field.PERCEPTION) != 0) return '*';
+        return '.';
+    }
+
+    /**
+     * Writes all bytes of the buffer to the channel.
+     * @param channel Channel where to write.
+     * @param buffer Bytes to write.
+     * @throws IOException If the channel cannot be written.
+     */
+    private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Splits the color into bytes.
+     * @param color Color in 0xRRGGBB format.
+     * @return red, green and blue bytes.
+     */
+    private static byte[] rgb(int color) {
+        return new byte[]{(byte) (color >> 16), (byte) (color >> 8), (byte) color};
+    }
+}
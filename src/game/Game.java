@@ -4,18 +4,24 @@ import agents.*;
 import algorithm.Algorithm;
 import algorithm.IncorrectDataException;
 import algorithm.NoPathException;
+import algorithm.PackedPath;
+import algorithm.SearchStatistics;
 
 public class Game {
     /**
-     * Size of the field.
+     * Default size of the field.
      */
     public static final int SIZE = 9;
 
     /**
-     * Array with all agents on the field.
+     * Field with all agents.
      */
-    private final Agent[][] table;
+    private final Field field;
     private final Harry harry;
+    private final Filch filch;
+    private final Cat cat;
+    private final Book book;
+    private final Cloak cloak;
     private final Exit exit;
 
     /**
@@ -23,31 +29,33 @@ public class Game {
      */
     private boolean badField;
 
+    /**
+     * Renderer of the field for draw(), created on the first use.
+     */
+    private FieldRenderer renderer;
+
     public Game(Harry harry, Filch filch, Cat cat, Book book, Cloak cloak, Exit exit) {
-        this.table = new Agent[SIZE][SIZE];
+        this(SIZE, SIZE, harry, filch, cat, book, cloak, exit);
+    }
+
+    public Game(int width, int height, Harry harry, Filch filch, Cat cat, Book book, Cloak cloak, Exit exit) {
+        this.field = new Field(width, height);
         this.harry = harry;
+        this.filch = filch;
+        this.cat = cat;
+        this.book = book;
+        this.cloak = cloak;
         this.exit = exit;
 
-        table[harry.y][harry.x] = harry;
-
-        BadAgent.VisibilityZone[] zones = cat.getPerception();
-        for (BadAgent.VisibilityZone zone : zones) {
-            if (zone.x == harry.x && zone.y == harry.y)
-                badField = true;
-            else table[zone.y][zone.x] = zone;
-        }
-        zones = filch.getPerception();
-        for (BadAgent.VisibilityZone zone : zones) {
-            if (zone.x == harry.x && zone.y == harry.y)
-                badField = true;
-            else table[zone.y][zone.x] = zone;
-        }
+        int harryCell = field.index(harry.x, harry.y);
+        badField = field.markPerception(cat, harryCell);
+        badField |= field.markPerception(filch, harryCell);
 
-        table[cat.y][cat.x] = cat;
-        table[filch.y][filch.x] = filch;
-        table[book.y][book.x] = book;
-        table[cloak.y][cloak.x] = cloak;
-        table[exit.y][exit.x] = exit;
+        field.set(field.index(cat.x, cat.y), Field.INSPECTOR);
+        field.set(field.index(filch.x, filch.y), Field.INSPECTOR);
+        field.set(field.index(book.x, book.y), Field.BOOK);
+        field.set(field.index(cloak.x, cloak.y), Field.CLOAK);
+        field.set(field.index(exit.x, exit.y), Field.EXIT);
     }
 
     /**
@@ -60,9 +68,12 @@ public class Game {
         if (badField)
             throw new NoPathException();
         System.out.println(algorithm);
+        SearchStatistics statistics = new SearchStatistics();
         try {
             long time = System.currentTimeMillis();
-            Path[] path = algorithm.getMinimalPath(harry, exit);
+            PackedPath packed = new PackedPath();
+            algorithm.getMinimalPath(field, harry, exit, packed, statistics);
+            Path[] path = packed.toArray();
             time = System.currentTimeMillis() - time;
 
             System.out.println("Win!");
@@ -70,36 +81,22 @@ public class Game {
             System.out.println("Path: " + pathToString(path));
             draw(path);
             System.out.println("Time: " + time + " ms");
+            System.out.println("Statistics: " + statistics);
         } catch (NoPathException e) {
             System.out.println("Lose!");
         }
     }
 
     /**
-     * Prints the field to the console.
+     * Prints the field to the console by one write.
      * @param path Array containing cells for minimal path to the exit with the book.
      */
     public void draw(Path[] path) {
-        for (int y = SIZE-1; y >= 0; y--) {
-            for (int x = 0; x < SIZE; x++) {
-                if (path != null) {
-                    boolean isPath = false;
-                    for (Path p : path) {
-                        if (p.x == x && p.y == y) {
-                            System.out.print(" " + p.symbol + " ");
-                            isPath = true;
-                            break;
-                        }
-                    }
-                    if (isPath) continue;
-                }
-                if (table[y][x] == null)
-                    System.out.print(" . ");
-                else
-                    System.out.print(" " + table[y][x].symbol + " ");
-            }
-            System.out.println();
-        }
+        if (renderer == null)
+            renderer = new FieldRenderer(this);
+        int length = renderer.render(path);
+        System.out.write(renderer.getBuffer(), 0, length);
+        System.out.flush();
     }
 
     /**
@@ -121,11 +118,83 @@ public class Game {
         return sb.toString();
     }
 
+    /**
+     * Returns true if Harry starts in the perception zone of the inspector, so the game cannot be won.
+     * @return true if the field is wrong.
+     */
+    public boolean isBadField() {
+        return badField;
+    }
+
+    /**
+     * Returns Harry (starting point of the algorithms).
+     * @return Harry.
+     */
+    public Harry getHarry() {
+        return harry;
+    }
+
+    /**
+     * Returns Argus Filch.
+     * @return Argus Filch.
+     */
+    public Filch getFilch() {
+        return filch;
+    }
+
+    /**
+     * Returns Mrs. Norris.
+     * @return Mrs. Norris.
+     */
+    public Cat getCat() {
+        return cat;
+    }
+
+    /**
+     * Returns the book.
+     * @return the book.
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Returns invisibility cloak.
+     * @return invisibility cloak.
+     */
+    public Cloak getCloak() {
+        return cloak;
+    }
+
+    /**
+     * Returns exit from the library.
+     * @return exit.
+     */
+    public Exit getExit() {
+        return exit;
+    }
+
     /**
      * Returns current field with all agents.
      * @return current field with all agents.
      */
-    public Agent[][] getTable() {
-        return table;
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Returns width of the field.
+     * @return width of the field.
+     */
+    public int getWidth() {
+        return field.getWidth();
+    }
+
+    /**
+     * Returns height of the field.
+     * @return height of the field.
+     */
+    public int getHeight() {
+        return field.getHeight();
     }
 }
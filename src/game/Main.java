@@ -3,6 +3,8 @@ package game;
 import agents.*;
 import algorithm.AStar;
 import algorithm.Backtracking;
+import algorithm.JumpPointSearch;
+import algorithm.LayeredSearch;
 import algorithm.IncorrectDataException;
 import algorithm.NoPathException;
 
@@ -10,25 +12,42 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
 
     /**
      * Main function of the application.
-     * @param args - not required (it will be skipped).
+     * @param args - optional width and height of the field, e.g. "20 15". By default, the field is 9x9.
      */
     public static void main(String[] args) {
         try {
-            Game game = getGameFromInput();
+            int width = Game.SIZE, height = Game.SIZE;
+            if (args.length >= 2) {
+                try {
+                    width = Integer.parseInt(args[0]);
+                    height = Integer.parseInt(args[1]);
+                } catch (NumberFormatException e) {
+                    throw new IncorrectDataException("Width and height of the field must be integers. Given: "
+                            + args[0] + " " + args[1]);
+                }
+                if (width <= 0 || height <= 0)
+                    throw new IncorrectDataException("Width and height of the field must be positive. Given: "
+                            + width + " " + height);
+            }
+            Game game = getGameFromInput(width, height);
 
             System.out.println("-----   Initial MAP   -----");
             game.draw(null);
             System.out.println("---------------------------");
 
-            game.play(new Backtracking(game.getTable()));
+            game.play(new Backtracking(game.getField(), ForkJoinPool.commonPool()));
+            System.out.println("---------------------------");
+            game.play(new AStar(game.getField()));
+            System.out.println("---------------------------");
+            game.play(new LayeredSearch(game.getField()));
             System.out.println("---------------------------");
-            game.play(new AStar(game.getTable()));
+            game.play(new JumpPointSearch(game.getField()));
         } catch (IncorrectDataException e) {
             System.out.println("Sorry, but input data is incorrect");
             System.out.println(e.getMessage());
@@ -45,75 +64,97 @@ public class Main {
      * Example:
      * [0,0] [4,2] [2,7] [7,4] [0,8] [1,4]
      * 1
+     * @param width Width of the field.
+     * @param height Height of the field.
      * @return Game object containing the agents specified by user.
      * @throws IncorrectDataException when user tries to enter incorrect data.
      */
-    private static Game getGameFromInput() throws IncorrectDataException {
+    private static Game getGameFromInput(int width, int height) throws IncorrectDataException {
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
             String input = reader.readLine();
-            int scenario;
-            try {
-                scenario = Integer.parseInt(reader.readLine());
-            } catch (NumberFormatException e) {
-                throw new IncorrectDataException("The input scenario must be integer (1 or 2)");
-            }
-
+            String scenario = reader.readLine();
+            Game game = parseGame(input, scenario, width, height);
             if (input.isEmpty())
-                return getRandomGame(scenario);
-
-            String[] actors = input.split(" ");
-            if (actors.length != 6)
-                throw new IncorrectDataException("The amount of input coordinates must be 6. Given " + actors.length);
-            if (scenario != 1 && scenario != 2)
-                throw new IncorrectDataException("Expected values for scenario: 1 and 2. Given: " + scenario);
-
-            ArrayList<Integer> possibleCells = new ArrayList<>();
-            for (int i = 0; i < Game.SIZE * Game.SIZE; i++) {
-                possibleCells.add(i);
-            }
-            int[] coordinates = getCoordinates(actors[0], possibleCells);
-            Harry harry = new Harry(coordinates[0], coordinates[1], scenario);
-            possibleCells.remove((Integer) (coordinates[1] * Game.SIZE + coordinates[0]));
-
-            coordinates = getCoordinates(actors[1], possibleCells);
-            Filch filch = new Filch(coordinates[0], coordinates[1]);
-            possibleCells.remove((Integer) (coordinates[1] * Game.SIZE + coordinates[0]));
-
-            coordinates = getCoordinates(actors[2], possibleCells);
-            Cat cat = new Cat(coordinates[0], coordinates[1]);
-            possibleCells.remove((Integer) (coordinates[1] * Game.SIZE + coordinates[0]));
-            for (BadAgent.VisibilityZone zone : filch.getPerception())
-                possibleCells.remove((Object) (zone.y * Game.SIZE + zone.x));
-            for (BadAgent.VisibilityZone zone : cat.getPerception())
-                possibleCells.remove((Object) (zone.y * Game.SIZE + zone.x));
-
-            coordinates = getCoordinates(actors[3], possibleCells);
-            Book book = new Book(coordinates[0], coordinates[1]);
-            possibleCells.remove((Integer) (coordinates[1] * Game.SIZE + coordinates[0]));
-
-            coordinates = getCoordinates(actors[4], possibleCells);
-            Cloak cloak = new Cloak(coordinates[0], coordinates[1]);
-            possibleCells.remove((Integer) (coordinates[1] * Game.SIZE + coordinates[0]));
-
-            coordinates = getCoordinates(actors[5], possibleCells);
-            Exit exit = new Exit(coordinates[0], coordinates[1]);
-            possibleCells.remove((Integer) (coordinates[1] * Game.SIZE + coordinates[0]));
-
-            return new Game(harry, filch, cat, book, cloak, exit);
+                System.out.println("Scenario: " + scenario);
+            return game;
         } catch (IOException e) {
             throw new IncorrectDataException("Error while reading an input");
         }
     }
 
+    /**
+     * Creates the game from the lines of input (see getGameFromInput()) and validates them.
+     * @param input Coordinates of the 6 agents, empty line for random positions.
+     * @param scenarioLine Scenario for the game: 1 or 2.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @return Game object containing the agents specified by user.
+     * @throws IncorrectDataException when user tries to enter incorrect data.
+     */
+    static Game parseGame(String input, String scenarioLine, int width, int height) throws IncorrectDataException {
+        int scenario;
+        try {
+            scenario = Integer.parseInt(scenarioLine == null ? "" : scenarioLine.trim());
+        } catch (NumberFormatException e) {
+            throw new IncorrectDataException("The input scenario must be integer (1 or 2)");
+        }
+
+        if (input == null || input.isEmpty())
+            return new FieldGenerator(width, height, System.nanoTime()).next(scenario);
+
+        String[] actors = input.split(" ");
+        if (actors.length != 6)
+            throw new IncorrectDataException("The amount of input coordinates must be 6. Given " + actors.length);
+        if (scenario != 1 && scenario != 2)
+            throw new IncorrectDataException("Expected values for scenario: 1 and 2. Given: " + scenario);
+
+        ArrayList<Integer> possibleCells = new ArrayList<>();
+        for (int i = 0; i < width * height; i++) {
+            possibleCells.add(i);
+        }
+        int[] coordinates = getCoordinates(actors[0], possibleCells, width, height);
+        Harry harry = new Harry(coordinates[0], coordinates[1], scenario);
+        possibleCells.remove((Integer) (coordinates[1] * width + coordinates[0]));
+
+        coordinates = getCoordinates(actors[1], possibleCells, width, height);
+        Filch filch = new Filch(coordinates[0], coordinates[1]);
+        possibleCells.remove((Integer) (coordinates[1] * width + coordinates[0]));
+
+        coordinates = getCoordinates(actors[2], possibleCells, width, height);
+        Cat cat = new Cat(coordinates[0], coordinates[1]);
+        possibleCells.remove((Integer) (coordinates[1] * width + coordinates[0]));
+        for (BadAgent.VisibilityZone zone : filch.getPerception(width, height))
+            possibleCells.remove((Object) (zone.y * width + zone.x));
+        for (BadAgent.VisibilityZone zone : cat.getPerception(width, height))
+            possibleCells.remove((Object) (zone.y * width + zone.x));
+
+        coordinates = getCoordinates(actors[3], possibleCells, width, height);
+        Book book = new Book(coordinates[0], coordinates[1]);
+        possibleCells.remove((Integer) (coordinates[1] * width + coordinates[0]));
+
+        coordinates = getCoordinates(actors[4], possibleCells, width, height);
+        Cloak cloak = new Cloak(coordinates[0], coordinates[1]);
+        possibleCells.remove((Integer) (coordinates[1] * width + coordinates[0]));
+
+        coordinates = getCoordinates(actors[5], possibleCells, width, height);
+        Exit exit = new Exit(coordinates[0], coordinates[1]);
+        possibleCells.remove((Integer) (coordinates[1] * width + coordinates[0]));
+
+        return new Game(width, height, harry, filch, cat, book, cloak, exit);
+    }
+
     /**
      * Supporting method for validation of input data.
      * @param input String in the format: [1,2] which describes the position of the agent.
      * @param possibleCells List with coordinates of the possible position for the input agent.
      *                      If the input coordinates not in this list then throws IncorrectDataException.
+     * @param width Width of the field.
+     * @param height Height of the field.
      * @return coordinates of the agent in array: [x,y].
      * @throws IncorrectDataException when user enters incorrect data.
      */
-    private static int[] getCoordinates(String input, ArrayList<Integer> possibleCells) throws IncorrectDataException {
+    private static int[] getCoordinates(String input, ArrayList<Integer> possibleCells, int width, int height)
+            throws IncorrectDataException {
         if (!input.contains("[") || !input.contains("]") || !input.contains(","))
             throw new IncorrectDataException("The format of input coordinates is incorrect. Given " + input);
         String[] actor = input.substring(1, input.length()-1).split(",");
@@ -127,65 +168,21 @@ public class Main {
             throw new IncorrectDataException("Input coordinates should be integers of the following format: [1,2]." +
                     " Given: " + input);
         }
-        if (x < 0 || y < 0 || x >= Game.SIZE || y >= Game.SIZE)
+        if (x < 0 || y < 0 || x >= width || y >= height)
             throw new IncorrectDataException("Input coordinates must be greater or equal to 0" +
-                    " and less than game field size: " + Game.SIZE);
-        if (!possibleCells.contains(y * Game.SIZE + x))
+                    " and less than game field size: " + width + "x" + height);
+        if (!possibleCells.contains(y * width + x))
             throw new IncorrectDataException("Agents cannot be placed on each other. Given: [" + x + "," + y + "]");
         return new int[]{x, y};
     }
 
-    /**
-     * Returns Game object with random parameters.
-     * @return Game object containing the random placed agents.
-     * @throws IncorrectDataException when something went wrong. See message in exception.
-     */
-    private static Game getRandomGame(int scenario) throws IncorrectDataException {
-        Random rand = new Random();
-        ArrayList<Integer> possibleCells = new ArrayList<>();
-        for (int i = 0; i < Game.SIZE * Game.SIZE; i++) {
-            possibleCells.add(i);
-        }
-
-        Harry harry = new Harry(0, 0, scenario);
-        possibleCells.remove(0);
-
-        int cell = possibleCells.get(rand.nextInt(possibleCells.size()));
-        Filch filch = new Filch(cell % Game.SIZE, cell / Game.SIZE);
-        possibleCells.remove((Object) cell);
-
-        cell = possibleCells.get(rand.nextInt(possibleCells.size()));
-        Cat cat = new Cat(cell % Game.SIZE, cell / Game.SIZE);
-        for (BadAgent.VisibilityZone zone : filch.getPerception()) {
-            possibleCells.remove((Object) (zone.y * Game.SIZE + zone.x));
-        }
-        for (BadAgent.VisibilityZone zone : cat.getPerception()) {
-            possibleCells.remove((Object) (zone.y * Game.SIZE + zone.x));
-        }
-
-        cell = possibleCells.get(rand.nextInt(possibleCells.size()));
-        Book book = new Book(cell % Game.SIZE, cell / Game.SIZE);
-        possibleCells.remove((Integer) cell);
-
-        cell = possibleCells.get(rand.nextInt(possibleCells.size()));
-        Cloak cloak = new Cloak(cell % Game.SIZE, cell / Game.SIZE);
-        possibleCells.remove((Integer) cell);
-
-        cell = possibleCells.get(rand.nextInt(possibleCells.size()));
-        Exit exit = new Exit(cell % Game.SIZE, cell / Game.SIZE);
-        possibleCells.remove((Integer) cell);
-
-        System.out.println("Scenario: " + harry.getScenario());
-        return new Game(harry, filch, cat, book, cloak, exit);
-    }
-
     /**
      * Returns standard scenario for the Game specified in the task.
      * @param scenario Scenario for Harry.
      * @return Game object containing the agents.
      * @throws IncorrectDataException when scenario is incorrect.
      */
-    private static Game getExampleGame(int scenario) throws IncorrectDataException {
+    static Game getExampleGame(int scenario) throws IncorrectDataException {
         Harry harry = new Harry(0, 0, scenario);
         Filch filch = new Filch(4, 2);
         Cloak cloak = new Cloak(0, 8);
@@ -202,7 +199,7 @@ public class Main {
      * @return Game object containing the agents.
      * @throws IncorrectDataException when scenario is wrong.
      */
-    private static Game getInterestingField1(int scenario) throws IncorrectDataException {
+    static Game getInterestingField1(int scenario) throws IncorrectDataException {
         Harry harry = new Harry(0, 0, scenario);
         Filch filch = new Filch(5, 8);
         Cloak cloak = new Cloak(5, 3);
@@ -219,7 +216,7 @@ public class Main {
      * @return Game object containing the agents.
      * @throws IncorrectDataException when scenario is wrong.
      */
-    private static Game getInterestingField2(int scenario) throws IncorrectDataException {
+    static Game getInterestingField2(int scenario) throws IncorrectDataException {
         Harry harry = new Harry(0, 0, scenario);
         Filch filch = new Filch(6, 0);
         Cloak cloak = new Cloak(1, 7);
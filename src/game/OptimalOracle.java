@@ -0,0 +1,247 @@
+package game;
+
+import agents.*;
+
+import java.util.*;
+
+/**
+ * Exact solver which knows the whole field: returns the minimal number of steps from Harry to the exit
+ * through the book, the invisibility cloak is picked up if it makes the path shorter.
+ * It is used to measure how far the algorithms are from the optimum, so it only counts steps.
+ * <p>
+ * Small fields are searched by the bitboard wavefront: cells reachable in t steps are kept as bits
+ * for each layer (book, cloak), and one step is 4 shifts of the bitboard, so a 9x9 field costs
+ * a few hundred word operations. Larger fields are searched by BFS over the layered states.
+ * Workspaces are kept between the calls. Not thread-safe: each thread needs its own oracle.
+ */
+public class OptimalOracle {
+    /**
+     * Maximal number of cells for the bitboard search. The wavefront makes one pass over the field per step,
+     * so on larger fields BFS with one visit per state is faster.
+     */
+    static final int BITBOARD_CELLS = 1 << 16;
+
+    private static final int CLOAK = 1, BOOK = 2;   // flags of the layer.
+    private static final int LAYERS = 4;
+
+    private int width, height;          // size of the field of the workspaces.
+    // Bitboard search: reached cells of each layer, masks of the columns and of the cells of the field
+    private long[][] reached, next;
+    private long[] notFirstColumn, notLastColumn, horizontal;
+    private long lastWord;              // cells of the field in the last word.
+    // BFS: states (cell << 2 | layer) of the queue, epoch of the last visit of each state
+    private int[] queue, visited;
+    private int epoch;
+
+    /**
+     * Returns the minimal number of steps of Harry to the exit with the book.
+     * @param game Game with all agents.
+     * @return the number of steps, -1 if there is no path or Harry starts in the perception zone.
+     */
+    public int getMinimalSteps(Game game) {
+        if (game.isBadField())
+            return -1;
+        Field field = game.getField();
+        int start = cell(field, game.getHarry()), book = cell(field, game.getBook());
+        int cloak = cell(field, game.getCloak()), exit = cell(field, game.getExit());
+        if (field.getWidth() * field.getHeight() <= BITBOARD_CELLS)
+            return searchBitboard(field, start, book, cloak, exit);
+        return searchStates(field, start, book, cloak, exit);
+    }
+
+    /**
+     * Expands the reached cells of all layers by one step until the exit is reached with the book.
+     * @param field Field of the game.
+     * @param start Cell of Harry.
+     * @param book Cell of the book.
+     * @param cloak Cell of the invisibility cloak.
+     * @param exit Cell of the exit.
+     * @return the number of steps, -1 if there is no path.
+     */
+    int searchBitboard(Field field, int start, int book, int cloak, int exit) {
+        prepareBitboard(field.getWidth(), field.getHeight());
+        int words = notFirstColumn.length, rowWords = width >>> 6, rowBits = width & 63;
+        for (int layer = 0; layer < LAYERS; layer++) {
+            Arrays.fill(reached[layer], 0);
+            Arrays.fill(next[layer], 0);    // empty layers stay zero until Harry steps on the object.
+        }
+        reached[0][start >>> 6] = 1L << start;
+        int layers = 1;                     // mask of the non-empty layers.
+        int low = start >>> 6, high = low;  // range of the words with reached cells.
+
+        for (int steps = 1; ; steps++) {
+            // One step moves cells by one row, so only the words near the reached ones are changed
+            int from = Math.max(low - rowWords - 2, 0), to = Math.min(high + rowWords + 2, words - 1);
+            int hFrom = Math.max(from - rowWords - 1, 0), hTo = Math.min(to + rowWords + 1, words - 1);
+            boolean changed = false;
+            for (int layer = 0; layer < LAYERS; layer++) {
+                if ((layers & 1 << layer) == 0)
+                    continue;
+                long[] cur = reached[layer], nxt = next[layer], blocked = field.getBlocked((layer & CLOAK) != 0);
+                // Moves along the row, then the row is moved up and down
+                for (int i = hFrom; i <= hTo; i++) {
+                    long left = (cur[i] << 1 | (i > 0 ? cur[i - 1] >>> 63 : 0)) & notFirstColumn[i];
+                    long right = (cur[i] >>> 1 | (i + 1 < words ? cur[i + 1] << 63 : 0)) & notLastColumn[i];
+                    horizontal[i] = cur[i] | left | right;
+                }
+                for (int i = from; i <= to; i++) {
+                    long bits = horizontal[i] | up(i, rowWords, rowBits, hFrom) | down(i, rowWords, rowBits, hTo);
+                    nxt[i] = bits & ~blocked[i] & (i + 1 < words ? -1L : lastWord);
+                    if (nxt[i] != cur[i]) {
+                        changed = true;
+                        low = Math.min(low, i);
+                        high = Math.max(high, i);
+                    }
+                }
+            }
+            // Stepping on the cloak or on the book moves Harry to the layer with the object
+            for (int layer = 0; layer < LAYERS; layer++) {
+                if ((layers & 1 << layer) == 0)
+                    continue;
+                long[] bits = next[layer];
+                if ((layer & CLOAK) == 0 && (bits[cloak >>> 6] & 1L << cloak) != 0) {
+                    next[layer | CLOAK][cloak >>> 6] |= 1L << cloak;
+                    layers |= 1 << (layer | CLOAK);
+                }
+                if ((layer & BOOK) == 0 && (bits[book >>> 6] & 1L << book) != 0) {
+                    next[layer | BOOK][book >>> 6] |= 1L << book;
+                    layers |= 1 << (layer | BOOK);
+                }
+            }
+            if (((next[BOOK][exit >>> 6] | next[BOOK | CLOAK][exit >>> 6]) & 1L << exit) != 0)
+                return steps;
+            // No new cells in all layers: the exit with the book cannot be reached
+            if (!changed)
+                return -1;
+            long[][] swap = reached;
+            reached = next;
+            next = swap;
+        }
+    }
+
+    /**
+     * Returns the word of the horizontal moves shifted one row up (to the larger indexes).
+     * @param word Index of the word of the result.
+     * @param rowWords Number of whole words in the row.
+     * @param rowBits Number of remaining bits in the row.
+     * @param first The first computed word of the horizontal moves, words before it are empty.
+     * @return cells of the word which are reached from the row below.
+     */
+    private long up(int word, int rowWords, int rowBits, int first) {
+        int source = word - rowWords;
+        long high = source >= first ? horizontal[source] : 0;
+        if (rowBits == 0)
+            return high;
+        long low = source - 1 >= first ? horizontal[source - 1] : 0;
+        return high << rowBits | low >>> 64 - rowBits;
+    }
+
+    /**
+     * Returns the word of the horizontal moves shifted one row down (to the smaller indexes).
+     * @param word Index of the word of the result.
+     * @param rowWords Number of whole words in the row.
+     * @param rowBits Number of remaining bits in the row.
+     * @param last The last computed word of the horizontal moves, words after it are empty.
+     * @return cells of the word which are reached from the row above.
+     */
+    private long down(int word, int rowWords, int rowBits, int last) {
+        int source = word + rowWords;
+        long low = source <= last ? horizontal[source] : 0;
+        if (rowBits == 0)
+            return low;
+        long high = source + 1 <= last ? horizontal[source + 1] : 0;
+        return low >>> rowBits | high << 64 - rowBits;
+    }
+
+    /**
+     * Searches the shortest path by BFS over the states (cell, book, cloak), each state is visited once.
+     * @param field Field of the game.
+     * @param start Cell of Harry.
+     * @param book Cell of the book.
+     * @param cloak Cell of the invisibility cloak.
+     * @param exit Cell of the exit.
+     * @return the number of steps, -1 if there is no path.
+     */
+    int searchStates(Field field, int start, int book, int cloak, int exit) {
+        prepareStates(field.getWidth(), field.getHeight());
+        if (++epoch == 0) {
+            Arrays.fill(visited, 0);
+            epoch = 1;
+        }
+        int head = 0, tail = 0;
+        queue[tail++] = start << 2;
+        visited[start << 2] = epoch;
+        for (int steps = 1; head < tail; steps++) {
+            for (int end = tail; head < end; head++) {
+                int state = queue[head], cell = state >>> 2, layer = state & 3;
+                int x = cell % width, y = cell / width;
+                for (int m = 0; m < Stencil.MOVEMENT.size(); m++) {
+                    int id = Stencil.MOVEMENT.cell(m, x, y, width, height);
+                    if (id < 0 || field.isBlocked(id, (layer & CLOAK) != 0))
+                        continue;
+                    int to = layer | (id == cloak ? CLOAK : 0) | (id == book ? BOOK : 0);
+                    if ((to & BOOK) != 0 && id == exit)
+                        return steps;
+                    int next = id << 2 | to;
+                    if (visited[next] != epoch) {
+                        visited[next] = epoch;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Allocates the bitboards and the masks of the columns for the field size if it has changed.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     */
+    private void prepareBitboard(int width, int height) {
+        int words = (width * height + 63) >>> 6;
+        if (notFirstColumn != null && this.width == width && this.height == height)
+            return;
+        this.width = width;
+        this.height = height;
+        this.queue = null;
+        reached = new long[LAYERS][words];
+        next = new long[LAYERS][words];
+        horizontal = new long[words];
+        notFirstColumn = new long[words];
+        notLastColumn = new long[words];
+        lastWord = (width * height & 63) == 0 ? -1L : (1L << (width * height & 63)) - 1;
+        for (int cell = 0; cell < width * height; cell++) {
+            if (cell % width != 0)
+                notFirstColumn[cell >>> 6] |= 1L << cell;
+            if (cell % width != width - 1)
+                notLastColumn[cell >>> 6] |= 1L << cell;
+        }
+    }
+
+    /**
+     * Allocates the queue and the visits of the states for the field size if it has changed.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     */
+    private void prepareStates(int width, int height) {
+        if (queue != null && this.width == width && this.height == height)
+            return;
+        this.width = width;
+        this.height = height;
+        this.notFirstColumn = null;
+        queue = new int[width * height * LAYERS];
+        visited = new int[queue.length];
+        epoch = 0;
+    }
+
+    /**
+     * Returns index of the cell of the agent.
+     * @param field Field of the game.
+     * @param agent Agent.
+     * @return index of the cell.
+     */
+    private static int cell(Field field, Agent agent) {
+        return field.index(agent.x, agent.y);
+    }
+}
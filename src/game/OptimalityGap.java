@@ -0,0 +1,119 @@
+package game;
+
+/**
+ * Distance of one algorithm from the optimal paths (OptimalOracle) over the batch of games.
+ * Games where Harry starts in the perception zone are skipped, because no algorithm is launched on them.
+ */
+public class OptimalityGap {
+    private long games;                 // games which are not lost on spawn.
+    private long wins;                  // games won by the algorithm.
+    private long optimalWins;           // games which can be won (the oracle found the path).
+    private long optimalPaths;          // won games with the minimal number of steps.
+    private long compared;              // games won by both the algorithm and the oracle.
+    private long stepGap;               // sum of the extra steps over the compared games.
+    private int maxStepGap;             // maximal number of extra steps.
+    private long invalidPaths;          // paths shorter than the optimal, so they step on the blocked cells.
+
+    /**
+     * Adds the result of the algorithm on one game.
+     * @param result Result of the algorithm, optimalSteps must be set.
+     */
+    public void add(RunResult result) {
+        if (result.badField)
+            return;
+        games++;
+        if (result.optimalSteps >= 0)
+            optimalWins++;
+        if (!result.win)
+            return;
+        wins++;
+        if (result.optimalSteps < 0 || result.steps < result.optimalSteps) {
+            invalidPaths++;
+            return;
+        }
+        int gap = result.steps - result.optimalSteps;
+        compared++;
+        stepGap += gap;
+        maxStepGap = Math.max(maxStepGap, gap);
+        if (gap == 0)
+            optimalPaths++;
+    }
+
+    /**
+     * Returns the number of games which are not lost on spawn.
+     * @return the number of games.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the share of the games won by the algorithm.
+     * @return win rate from 0 to 1.
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * Returns the share of the games which can be won.
+     * @return win rate of the oracle from 0 to 1.
+     */
+    public double getOptimalWinRate() {
+        return games == 0 ? 0 : (double) optimalWins / games;
+    }
+
+    /**
+     * Returns how much less often the algorithm wins than it is possible.
+     * @return difference of the win rates of the oracle and of the algorithm.
+     */
+    public double getWinRateGap() {
+        return getOptimalWinRate() - getWinRate();
+    }
+
+    /**
+     * Returns the average number of extra steps of the won games.
+     * @return average difference of the steps of the algorithm and the optimal steps.
+     */
+    public double getAverageStepGap() {
+        return compared == 0 ? 0 : (double) stepGap / compared;
+    }
+
+    /**
+     * Returns the maximal number of extra steps.
+     * @return maximal difference of the steps of the algorithm and the optimal steps.
+     */
+    public int getMaxStepGap() {
+        return maxStepGap;
+    }
+
+    /**
+     * Returns the share of the won games with the minimal number of steps.
+     * @return share from 0 to 1.
+     */
+    public double getOptimalPathRate() {
+        return wins == 0 ? 0 : (double) optimalPaths / wins;
+    }
+
+    /**
+     * Returns the number of won games with the path shorter than optimal (or without optimal path at all).
+     * Such paths step on the blocked cells, e.g. after the blind step.
+     * @return the number of invalid paths.
+     */
+    public long getInvalidPaths() {
+        return invalidPaths;
+    }
+
+    /**
+     * Returns the gap in the following format:
+     * games=250 winRate=0.92 optimalWinRate=0.95 winRateGap=0.03 stepGap=0.41 maxStepGap=4 optimalPaths=0.7 invalid=0
+     * @return String representation of the gap.
+     */
+    @Override
+    public String toString() {
+        return "games=" + games + " winRate=" + getWinRate() + " optimalWinRate=" + getOptimalWinRate()
+                + " winRateGap=" + getWinRateGap() + " stepGap=" + getAverageStepGap()
+                + " maxStepGap=" + maxStepGap + " optimalPaths=" + getOptimalPathRate()
+                + " invalid=" + invalidPaths;
+    }
+}
@@ -0,0 +1,160 @@
+package game;
+
+import agents.*;
+import algorithm.IncorrectDataException;
+
+import java.util.*;
+
+/**
+ * Reservation table of the inspectors which follow periodic patrol routes.
+ * The route of the inspector is a list of its positions at ticks 0, 1, 2, ... and it is repeated forever,
+ * so the whole schedule repeats every period = lcm(lengths of the routes) ticks.
+ * Only watched cells are kept: for each tick a sorted slice of entries (cell << 1 | 1 for the inspector,
+ * cell << 1 for the perception zone). Therefore, the table takes (period * cells of the zones) integers
+ * and does not depend on the size of the field, e.g. 1000 ticks with Filch and Mrs. Norris take about 140 KB.
+ */
+public class PatrolTable {
+    private final int width, height;
+    private final int period;           // number of ticks after which the schedule repeats.
+    private final int[] offsets;        // start of the slice of each tick in entries, offsets[period] is the end.
+    private final int[] entries;        // watched cells of all ticks.
+
+    /**
+     * Calculates perception zones of the inspectors for each tick of the period.
+     * Only the perception of the inspectors is used, the agents are not changed.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @param inspectors Inspectors which patrol the field.
+     * @param routes Route of each inspector: its position at each tick.
+     * @throws IncorrectDataException If the numbers of inspectors and routes differ, any route is empty
+     * or goes outside of the field, or the period is too long.
+     */
+    public PatrolTable(int width, int height, List<? extends BadAgent> inspectors, List<Path[]> routes)
+            throws IncorrectDataException {
+        if (inspectors.size() != routes.size())
+            throw new IncorrectDataException("Each inspector must have a route. Inspectors: " + inspectors.size()
+                    + ", routes: " + routes.size());
+        this.width = width;
+        this.height = height;
+        long period = 1;
+        for (Path[] route : routes) {
+            if (route.length == 0)
+                throw new IncorrectDataException("The route of the inspector is empty.");
+            for (Path p : route) {
+                if (p.x < 0 || p.y < 0 || p.x >= width || p.y >= height)
+                    throw new IncorrectDataException("The route goes outside of the field: " + p);
+            }
+            period = lcm(period, route.length);
+            if (period > Integer.MAX_VALUE / 4)
+                throw new IncorrectDataException("The period of the patrol is too long.");
+        }
+        this.period = (int) period;
+
+        int zone = 0;
+        for (BadAgent inspector : inspectors)
+            zone += inspector.perception * inspector.perception;
+        if ((long) this.period * zone > Integer.MAX_VALUE - 8)
+            throw new IncorrectDataException("The period of the patrol is too long.");
+        this.offsets = new int[this.period + 1];
+        int[] entries = new int[Math.max(this.period * zone, 1)];
+        int size = 0;
+        for (int t = 0; t < this.period; t++) {
+            offsets[t] = size;
+            for (int i = 0; i < inspectors.size(); i++) {
+                BadAgent inspector = inspectors.get(i);
+                Path[] route = routes.get(i);
+                Path position = route[t % route.length];
+                size = watch(position.x, position.y, inspector.perception, entries, size);
+            }
+            // The inspector entry goes after the zone entry of the same cell and replaces it
+            Arrays.sort(entries, offsets[t], size);
+            int unique = offsets[t];
+            for (int i = offsets[t]; i < size; i++) {
+                if (unique > offsets[t] && entries[unique - 1] >>> 1 == entries[i] >>> 1)
+                    entries[unique - 1] = entries[i];
+                else
+                    entries[unique++] = entries[i];
+            }
+            size = unique;
+        }
+        offsets[this.period] = size;
+        this.entries = Arrays.copyOf(entries, size);
+    }
+
+    /**
+     * Adds entries of the perception zone (see BadAgent.getPerception()) of the inspector in the position.
+     * @param x x-coordinate of the inspector.
+     * @param y y-coordinate of the inspector.
+     * @param perception Diameter of the perception zone.
+     * @param entries Array where to put the entries.
+     * @param size The number of entries already in the array.
+     * @return the number of entries in the array.
+     */
+    private int watch(int x, int y, int perception, int[] entries, int size) {
+        int step = perception / 2;
+        for (int zoneY = Math.max(y - step, 0); zoneY <= Math.min(y + step, height - 1); zoneY++) {
+            for (int zoneX = Math.max(x - step, 0); zoneX <= Math.min(x + step, width - 1); zoneX++) {
+                boolean center = zoneX == x && zoneY == y;
+                entries[size++] = (zoneY * width + zoneX) << 1 | (center ? 1 : 0);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Calculates the least common multiple.
+     * @param a First number.
+     * @param b Second number.
+     * @return the least common multiple of the numbers.
+     */
+    private static long lcm(long a, long b) {
+        long x = a, y = b;
+        while (y != 0) {
+            long r = x % y;
+            x = y;
+            y = r;
+        }
+        return a / x * b;
+    }
+
+    /**
+     * Checks if Harry cannot stay in the cell at the tick.
+     * @param cell Index of the cell.
+     * @param time Number of the tick, it is taken modulo period.
+     * @param hasCloak Does Harry have invisibility cloak.
+     * @return true if the cell has an inspector, or it is watched and Harry does not have the cloak.
+     */
+    public boolean isBlocked(int cell, int time, boolean hasCloak) {
+        int t = time % period;
+        int i = Arrays.binarySearch(entries, offsets[t], offsets[t + 1], cell << 1);
+        if (i >= 0)
+            return !hasCloak;
+        // Not found: the insertion point is at the inspector entry if it exists
+        i = -i - 1;
+        return i < offsets[t + 1] && entries[i] == (cell << 1 | 1);
+    }
+
+    /**
+     * Returns the number of ticks after which the schedule repeats.
+     * @return the period of the patrol.
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Returns width of the field.
+     * @return width of the field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns height of the field.
+     * @return height of the field.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
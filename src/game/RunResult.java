@@ -0,0 +1,51 @@
+package game;
+
+import algorithm.SearchStatistics;
+
+/**
+ * Result of one algorithm on one generated game of the batch.
+ */
+public class RunResult {
+    public final int game;              // index of the game in the batch.
+    public final long seed;             // seed from which the game was generated.
+    public final String algorithm;      // name of the algorithm.
+    public final boolean badField;      // Harry starts in the perception zone, the algorithm was not launched.
+    public final boolean error;         // algorithm failed with an unexpected exception, the game is not won.
+    public final boolean win;           // algorithm found the path to the exit with the book.
+    public final int steps;             // number of steps of the found path, -1 if there is no path.
+    public final int optimalSteps;      // steps of the optimal path found by OptimalOracle, -1 if there is no path.
+    public final long nanos;            // working time of the algorithm.
+    public final SearchStatistics statistics;   // counters of the search, NONE if they were not collected.
+
+    public RunResult(int game, long seed, String algorithm, boolean badField, boolean error,
+                     boolean win, int steps, int optimalSteps, long nanos, SearchStatistics statistics) {
+        this.game = game;
+        this.seed = seed;
+        this.algorithm = algorithm;
+        this.badField = badField;
+        this.error = error;
+        this.win = win;
+        this.steps = steps;
+        this.optimalSteps = optimalSteps;
+        this.nanos = nanos;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns result in the following format:
+     * game algorithm WIN|LOSE|ERROR|BAD steps nanos nodes pushes updates blindSteps books cloaks bookNanos exitNanos
+     * optimalSteps
+     * @return String representation of the result.
+     */
+    @Override
+    public String toString() {
+        return game + " " + algorithm + " " + (badField ? "BAD" : error ? "ERROR" : win ? "WIN" : "LOSE")
+                + " " + steps + " " + nanos + " " + statistics.getNodesExpanded()
+                + " " + statistics.getHeapPushes() + " " + statistics.getHeapUpdates()
+                + " " + statistics.getBlindSteps() + " " + statistics.getBooksFound()
+                + " " + statistics.getCloaksPicked()
+                + " " + statistics.getPhaseNanos(SearchStatistics.PHASE_BOOK)
+                + " " + statistics.getPhaseNanos(SearchStatistics.PHASE_EXIT)
+                + " " + optimalSteps;
+    }
+}
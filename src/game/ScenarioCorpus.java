@@ -0,0 +1,295 @@
+package game;
+
+import agents.*;
+import algorithm.IncorrectDataException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Binary file with recorded games (layouts of the agents) on one field size.
+ * The file is memory-mapped, records are read by index without parsing.
+ * <p>
+ * Layout of the file (little-endian):
+ * <pre>
+ * header:  magic, version, width, height (int each), number of records (long), padding to 32 bytes
+ * records: 16 bytes for each game:
+ *          first 8 bytes - cells of Harry, Filch and Mrs. Norris (20 bits each),
+ *          last 8 bytes - cells of the book, the cloak and the exit (20 bits each), bits 60-63 - scenario
+ * </pre>
+ * Cell is y * width + x, so the field can have up to 2^20 cells. Records never cross the mapped chunks,
+ * because the header and the chunks are multiples of the record size.
+ */
+public class ScenarioCorpus implements Closeable {
+    static final int MAGIC = 0x48505343;                // "HPSC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 16;
+    static final int CELL_BITS = 20;
+    static final int MAX_CELLS = 1 << CELL_BITS;
+
+    private static final long CELL_MASK = MAX_CELLS - 1;
+    private static final long CHUNK_SIZE = 1L << 30;    // size of one mapped part of the file.
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] chunks;
+    private final int width, height;
+    private final long size;            // number of records.
+
+    private ScenarioCorpus(RandomAccessFile file) throws IOException {
+        this.file = file;
+        FileChannel channel = file.getChannel();
+        long bytes = channel.size();
+        this.chunks = new MappedByteBuffer[(int) ((bytes + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long from = i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(CHUNK_SIZE, bytes - from));
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (bytes < HEADER_SIZE || chunks[0].getInt(0) != MAGIC || chunks[0].getInt(4) != VERSION)
+            throw new IOException("The file is not a scenario corpus of version " + VERSION);
+        this.width = chunks[0].getInt(8);
+        this.height = chunks[0].getInt(12);
+        this.size = chunks[0].getLong(16);
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_CELLS
+                || size < 0 || HEADER_SIZE + size * RECORD_SIZE > bytes)
+            throw new IOException("The header of the scenario corpus is corrupted");
+    }
+
+    /**
+     * Opens and maps the corpus.
+     * @param fileName Name of the file created by ScenarioCorpus.Writer.
+     * @return the corpus.
+     * @throws IOException If the file cannot be read or has wrong format.
+     */
+    public static ScenarioCorpus open(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            return new ScenarioCorpus(file);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of games in the corpus.
+     * @return the number of records.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns width of the field of all games.
+     * @return width of the field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns height of the field of all games.
+     * @return height of the field.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Restores the game from the record.
+     * @param index Index of the record.
+     * @return the game.
+     * @throws IncorrectDataException If the record is corrupted: cells outside of the field,
+     * agents in the same cell or wrong scenario.
+     */
+    public Game getGame(long index) throws IncorrectDataException {
+        if (index < 0 || index >= size)
+            throw new IncorrectDataException("No record " + index + " in the corpus of " + size + " games");
+        long position = HEADER_SIZE + index * RECORD_SIZE;
+        MappedByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)];
+        int offset = (int) (position % CHUNK_SIZE);
+        try {
+            return decode(chunk.getLong(offset), chunk.getLong(offset + 8), width, height);
+        } catch (IncorrectDataException e) {
+            throw new IncorrectDataException("Record " + index + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Restores the game from the 16 bytes of the record, the same layout is used by SolverServer.
+     * @param low First 8 bytes of the record.
+     * @param high Last 8 bytes of the record.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @return the game.
+     * @throws IncorrectDataException If the record is corrupted: cells outside of the field,
+     * agents in the same cell or wrong scenario.
+     */
+    static Game decode(long low, long high, int width, int height) throws IncorrectDataException {
+        int[] cells = new int[6];
+        for (int i = 0; i < 3; i++) {
+            cells[i] = (int) (low >>> CELL_BITS * i & CELL_MASK);
+            cells[i + 3] = (int) (high >>> CELL_BITS * i & CELL_MASK);
+        }
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] >= width * height)
+                throw new IncorrectDataException("cell " + cells[i] + " is outside of the field");
+            for (int j = 0; j < i; j++) {
+                if (cells[i] == cells[j])
+                    throw new IncorrectDataException("agents cannot be placed on each other");
+            }
+        }
+        int scenario = (int) (high >>> 3 * CELL_BITS);
+        return new Game(width, height, new Harry(cells[0] % width, cells[0] / width, scenario),
+                new Filch(cells[1] % width, cells[1] / width), new Cat(cells[2] % width, cells[2] / width),
+                new Book(cells[3] % width, cells[3] / width), new Cloak(cells[4] % width, cells[4] / width),
+                new Exit(cells[5] % width, cells[5] / width));
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Creates the file for games on the field of the given size.
+     * @param fileName Name of the file, existing file is replaced.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @return writer of the records.
+     * @throws IOException If the file cannot be created or the field is too large.
+     */
+    public static Writer create(String fileName, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_CELLS)
+            throw new IOException("The field " + width + "x" + height + " cannot be stored in the corpus");
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        file.setLength(0);
+        return new Writer(file, width, height);
+    }
+
+    /**
+     * Appends records to the corpus through the buffer, the number of records is written on close().
+     */
+    public static class Writer implements Closeable {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private final int width, height;
+        private long size;              // number of written records.
+
+        private Writer(RandomAccessFile file, int width, int height) throws IOException {
+            this.file = file;
+            this.channel = file.getChannel();
+            this.width = width;
+            this.height = height;
+            writeHeader();
+        }
+
+        /**
+         * Adds the game to the corpus.
+         * @param game Game on the field of the corpus size.
+         * @throws IOException If the file cannot be written or the game has another field size.
+         */
+        public void add(Game game) throws IOException {
+            if (game.getWidth() != width || game.getHeight() != height)
+                throw new IOException("The game " + game.getWidth() + "x" + game.getHeight()
+                        + " does not match the corpus " + width + "x" + height);
+            if (!buffer.hasRemaining())
+                flush();
+            buffer.putLong(cell(game.getHarry()) | cell(game.getFilch()) << CELL_BITS
+                    | cell(game.getCat()) << 2 * CELL_BITS);
+            buffer.putLong(cell(game.getBook()) | cell(game.getCloak()) << CELL_BITS
+                    | cell(game.getExit()) << 2 * CELL_BITS | (long) game.getHarry().getScenario() << 3 * CELL_BITS);
+            size++;
+        }
+
+        /**
+         * Returns the number of added games.
+         * @return the number of records.
+         */
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                writeHeader();
+            } finally {
+                file.close();
+            }
+        }
+
+        /**
+         * Writes buffered records to the end of the file.
+         * @throws IOException If the file cannot be written.
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer, channel.size());
+            buffer.clear();
+        }
+
+        /**
+         * Writes the header with the current number of records.
+         * @throws IOException If the file cannot be written.
+         */
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putLong(size);
+            header.clear();
+            int position = 0;
+            while (header.hasRemaining())
+                position += channel.write(header, position);
+        }
+
+        /**
+         * Returns index of the cell of the agent.
+         * @param agent Agent.
+         * @return index of the cell.
+         */
+        private long cell(Agent agent) {
+            return (long) agent.y * width + agent.x;
+        }
+    }
+
+    /**
+     * Generates the corpus of seeded random games, scenarios 1 and 2 alternate.
+     * @param args file count [seed] [width height]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Expected arguments: file count [seed] [width height]");
+            return;
+        }
+        try {
+            long count = Long.parseLong(args[1]);
+            long seed = args.length >= 3 ? Long.parseLong(args[2]) : System.nanoTime();
+            int width = args.length >= 5 ? Integer.parseInt(args[3]) : Game.SIZE;
+            int height = args.length >= 5 ? Integer.parseInt(args[4]) : Game.SIZE;
+            FieldGenerator generator = new FieldGenerator(width, height, seed);
+            long time = System.currentTimeMillis();
+            try (Writer writer = create(args[0], width, height)) {
+                for (long i = 0; i < count; i++)
+                    writer.add(generator.next((int) (i % 2) + 1));
+            }
+            System.out.println("Games: " + count + ", time: " + (System.currentTimeMillis() - time) + " ms");
+        } catch (NumberFormatException e) {
+            System.out.println("Arguments must be integers. Given: " + String.join(" ", args));
+        } catch (IncorrectDataException e) {
+            System.out.println("Sorry, but input data is incorrect");
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error while writing the corpus: " + e.getMessage());
+        }
+    }
+}
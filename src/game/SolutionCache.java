@@ -0,0 +1,230 @@
+package game;
+
+import agents.Agent;
+import agents.Path;
+import algorithm.Algorithm;
+import algorithm.IncorrectDataException;
+import algorithm.NoPathException;
+import algorithm.PackedPath;
+import algorithm.SearchStatistics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the found paths for the fields of one size.
+ * The result of the algorithm depends only on positions of 6 agents and scenario,
+ * so the key is packed into long:
+ * <pre>
+ * bits 0-53   cells (y * width + x) of Harry, Filch, Cat, Book, Cloak and Exit, 9 bits each
+ * bit  54     scenario - 1
+ * bits 55-58  id of the algorithm (see getAlgorithmId)
+ * </pre>
+ * Entries are split into stripes by the key, each stripe is LRU (LinkedHashMap in access order)
+ * guarded by its own lock, so threads working with different keys rarely wait for each other.
+ */
+public class SolutionCache {
+    /**
+     * Maximum number of cells on the field, index of the cell takes 9 bits.
+     */
+    public static final int MAX_CELLS = 1 << 9;
+    /**
+     * Maximum number of algorithms, id of the algorithm takes 4 bits.
+     */
+    private static final int MAX_ALGORITHMS = 1 << 4;
+    /**
+     * Stored result for the games without a path.
+     */
+    private static final Path[] NO_PATH = new Path[0];
+
+    private final int width, height;
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Map<String, Integer> algorithmIds = new ConcurrentHashMap<>();   // ids given by this cache.
+
+    /**
+     * Creates the cache with 16 stripes.
+     * @param width Width of the fields.
+     * @param height Height of the fields.
+     * @param capacity Maximum number of stored paths.
+     * @throws IncorrectDataException If the field is too big for the key.
+     */
+    public SolutionCache(int width, int height, int capacity) throws IncorrectDataException {
+        this(width, height, capacity, 16);
+    }
+
+    /**
+     * Creates the cache.
+     * @param width Width of the fields.
+     * @param height Height of the fields.
+     * @param capacity Maximum number of stored paths.
+     * @param concurrency Number of stripes, rounded up to the power of 2.
+     * @throws IncorrectDataException If the field is too big for the key.
+     */
+    public SolutionCache(int width, int height, int capacity, int concurrency) throws IncorrectDataException {
+        if (width * height > MAX_CELLS)
+            throw new IncorrectDataException("The field " + width + "x" + height + " is too big for the cache."
+                    + " Maximum number of cells: " + MAX_CELLS);
+        this.width = width;
+        this.height = height;
+        int count = Integer.highestOneBit(Math.max(concurrency, 1) * 2 - 1);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++)
+            stripes[i] = new Stripe(Math.max(capacity / count, 1));
+    }
+
+    /**
+     * Returns id of the algorithm in this cache. Ids are given in the order of the first call,
+     * each cache has its own ids, so they are freed together with the cache.
+     * Algorithms are distinguished by class and name, so A star with different heuristics gets different ids.
+     * @param algorithm The algorithm.
+     * @return id of the algorithm.
+     * @throws IncorrectDataException If there are too many algorithms.
+     */
+    public int getAlgorithmId(Algorithm algorithm) throws IncorrectDataException {
+        String name = algorithm.getClass().getName() + ' ' + algorithm;
+        Integer id = algorithmIds.get(name);
+        if (id == null) {
+            synchronized (algorithmIds) {
+                id = algorithmIds.get(name);
+                if (id == null) {
+                    if (algorithmIds.size() >= MAX_ALGORITHMS)
+                        throw new IncorrectDataException("Too many algorithms for the cache. Maximum: "
+                                + MAX_ALGORITHMS);
+                    id = algorithmIds.size();
+                    algorithmIds.put(name, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Calculates the key of the game for the algorithm.
+     * @param game Game with positions of all agents.
+     * @param algorithmId Id of the algorithm.
+     * @return the key of the game.
+     */
+    public long getKey(Game game, int algorithmId) {
+        long key = 0;
+        key = cell(key, game.getHarry(), 0);
+        key = cell(key, game.getFilch(), 1);
+        key = cell(key, game.getCat(), 2);
+        key = cell(key, game.getBook(), 3);
+        key = cell(key, game.getCloak(), 4);
+        key = cell(key, game.getExit(), 5);
+        key |= (long) (game.getHarry().getScenario() - 1) << 54;
+        return key | (long) algorithmId << 55;
+    }
+
+    /**
+     * Puts index of the cell of the agent into the key.
+     * @param key Current key.
+     * @param agent Agent.
+     * @param position Position of the agent in the key (0-5).
+     * @return the key with the cell of the agent.
+     */
+    private long cell(long key, Agent agent, int position) {
+        return key | (long) (agent.y * width + agent.x) << 9 * position;
+    }
+
+    /**
+     * Returns the path from the cache or launches the algorithm and stores its result.
+     * Note: returned array is shared between the callers and must not be modified.
+     * @param game Game to solve. Must have the same size as the cache.
+     * @param algorithm The algorithm, it may be shared between fields: the field of the game is passed to the call.
+     * @return Array with a path to end point.
+     * @throws NoPathException If there is no path (the result is also cached).
+     * @throws IncorrectDataException If something went wrong.
+     */
+    public Path[] getMinimalPath(Game game, Algorithm algorithm) throws NoPathException, IncorrectDataException {
+        if (game.getWidth() != width || game.getHeight() != height)
+            throw new IncorrectDataException("Expected field " + width + "x" + height + " for the cache. Given: "
+                    + game.getWidth() + "x" + game.getHeight());
+        long key = getKey(game, getAlgorithmId(algorithm));
+        Stripe stripe = getStripe(key);
+        Path[] path;
+        synchronized (stripe) {
+            path = stripe.get(key);
+        }
+        if (path == null) {
+            misses.increment();
+            try {
+                PackedPath sink = new PackedPath();
+                algorithm.getMinimalPath(game.getField(), game.getHarry(), game.getExit(), sink, SearchStatistics.NONE);
+                path = sink.toArray();
+            } catch (NoPathException e) {
+                path = NO_PATH;
+            }
+            synchronized (stripe) {
+                stripe.put(key, path);
+            }
+        } else {
+            hits.increment();
+        }
+        if (path == NO_PATH)
+            throw new NoPathException();
+        return path;
+    }
+
+    /**
+     * Returns the stripe for the key.
+     * @param key Key of the game.
+     * @return the stripe which stores the key.
+     */
+    private Stripe getStripe(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    /**
+     * Returns the number of results taken from the cache.
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of launches of the algorithms.
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of stored paths.
+     * @return the number of stored paths.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Part of the cache with LRU eviction.
+     */
+    private static class Stripe extends LinkedHashMap<Long, Path[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Path[]> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package game;
+
+import agents.*;
+import algorithm.NoPathException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Precomputed results of the algorithms for all games on the 9x9 field which can be generated randomly:
+ * Harry is in [0,0], Filch and Mrs. Norris are in any other cells,
+ * book, cloak and exit are in different cells outside of Harry's cell and perception zones.
+ * The file is memory-mapped, so the lookup does not need any search.
+ * <p>
+ * Layout of the file (little-endian):
+ * <pre>
+ * header:  magic, version, width, height, number of (Filch, Cat) pairs (int each),
+ *          offsets of the pairs in configurations (long each, PAIRS + 1), padding to 64 bytes
+ * records: 16 bytes for each configuration, scenario and algorithm:
+ *          index = (configuration * 2 + scenario - 1) * 2 + algorithm
+ * </pre>
+ * Configurations of the pair (Filch, Cat) are ranked densely: (book * (n-1) + cloak) * (n-2) + exit,
+ * where cells are numbered among n cells which are free for the objects.
+ * Record: bits 0-2 - status, bits 3-9 - the first cell of the path, bits 10-17 - number of steps,
+ * next 108 bits - directions of the steps (3 bits each, index in Stencil.MOVEMENT).
+ * Paths longer than MAX_STEPS or with jumps between not neighbour cells are not stored.
+ */
+public class SolutionDatabase implements Closeable {
+    /**
+     * Algorithm id of Backtracking in the records.
+     */
+    public static final int BACKTRACKING = 0;
+    /**
+     * Algorithm id of A star in the records.
+     */
+    public static final int A_STAR = 1;
+
+    static final int MAGIC = 0x48504442;                // "HPDB"
+    static final int VERSION = 1;
+    static final int CELLS = Game.SIZE * Game.SIZE;
+    static final int PAIRS = (CELLS - 1) * (CELLS - 2); // Filch and Cat in any cells except Harry's cell.
+    static final int RECORD_SIZE = 16;
+    static final int RECORDS_PER_CONFIGURATION = 4;     // 2 scenarios * 2 algorithms.
+    static final int HEADER_SIZE = (5 * 4 + (PAIRS + 1) * 8 + 63) & ~63;
+    static final int MAX_STEPS = 36;
+
+    static final int UNKNOWN = 0;       // the record was not built.
+    static final int WIN = 1;           // the path is stored.
+    static final int LOSE = 2;          // the algorithm has not found the path.
+    static final int BAD_FIELD = 3;     // Harry starts in the perception zone.
+    static final int LONG_PATH = 4;     // the path was found, but it is too long to store.
+
+    private static final long CHUNK_SIZE = 1L << 30;    // size of one mapped part of the file.
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] chunks;
+    private final long[] offsets;       // first configuration of each (Filch, Cat) pair.
+    private final long size;            // size of the file in bytes.
+
+    private SolutionDatabase(RandomAccessFile file) throws IOException {
+        this.file = file;
+        FileChannel channel = file.getChannel();
+        this.size = channel.size();
+        this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long from = i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(CHUNK_SIZE, size - from));
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (size < HEADER_SIZE || chunks[0].getInt(0) != MAGIC || chunks[0].getInt(4) != VERSION
+                || chunks[0].getInt(8) != Game.SIZE || chunks[0].getInt(12) != Game.SIZE
+                || chunks[0].getInt(16) != PAIRS)
+            throw new IOException("The file is not a solution database of version " + VERSION);
+        this.offsets = new long[PAIRS + 1];
+        for (int i = 0; i <= PAIRS; i++)
+            offsets[i] = chunks[0].getLong(20 + i * 8);
+    }
+
+    /**
+     * Opens and maps the database.
+     * @param fileName Name of the file created by SolutionDatabaseBuilder.
+     * @return the database.
+     * @throws IOException If the file cannot be read or has wrong format.
+     */
+    public static SolutionDatabase open(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            return new SolutionDatabase(file);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the stored path of the algorithm for the game.
+     * @param game Game to look for.
+     * @param algorithm BACKTRACKING or A_STAR.
+     * @return Array with a path to end point, null if the game is not in the database.
+     * @throws NoPathException If the algorithm has not found the path or the field is bad.
+     */
+    public Path[] getMinimalPath(Game game, int algorithm) throws NoPathException {
+        long index = getRecordIndex(game, algorithm);
+        long position = HEADER_SIZE + index * RECORD_SIZE;
+        if (index < 0 || position + RECORD_SIZE > size)
+            return null;
+        MappedByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)];
+        int offset = (int) (position % CHUNK_SIZE);
+        long low = chunk.getLong(offset), high = chunk.getLong(offset + 8);
+        switch ((int) (low & 7)) {
+            case WIN:
+                return decode(low, high);
+            case LOSE:
+            case BAD_FIELD:
+                throw new NoPathException();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Calculates index of the record of the game.
+     * @param game Game to look for.
+     * @param algorithm BACKTRACKING or A_STAR.
+     * @return index of the record, -1 if the game cannot be in the database.
+     */
+    private long getRecordIndex(Game game, int algorithm) {
+        Harry harry = game.getHarry();
+        if (game.getWidth() != Game.SIZE || game.getHeight() != Game.SIZE || harry.x != 0 || harry.y != 0)
+            return -1;
+        int filch = cell(game.getFilch()), cat = cell(game.getCat());
+        if (filch == 0 || cat == 0 || filch == cat)
+            return -1;
+        long[] free = getFreeCells(filch, cat);
+        int book = cell(game.getBook()), cloak = cell(game.getCloak()), exit = cell(game.getExit());
+        if (!isSet(free, book) || !isSet(free, cloak) || !isSet(free, exit)
+                || book == cloak || book == exit || cloak == exit)
+            return -1;
+        long configuration = offsets[getPairIndex(filch, cat)] + getConfigurationRank(free, book, cloak, exit);
+        return (configuration * 2 + harry.getScenario() - 1) * 2 + algorithm;
+    }
+
+    /**
+     * Restores the path from the record.
+     * @param low The first 8 bytes of the record.
+     * @param high The last 8 bytes of the record.
+     * @return Array with a path to end point.
+     */
+    static Path[] decode(long low, long high) {
+        int start = (int) (low >>> 3 & 0x7F);
+        int steps = (int) (low >>> 10 & 0xFF);
+        Path[] path = new Path[steps + 1];
+        int x = start % Game.SIZE, y = start / Game.SIZE;
+        path[0] = new Path(x, y);
+        for (int i = 0; i < steps; i++) {
+            int direction = (int) (i < 15 ? low >>> 18 + 3 * i : high >>> 3 * (i - 15)) & 7;
+            x += Stencil.MOVEMENT.dx(direction);
+            y += Stencil.MOVEMENT.dy(direction);
+            path[i + 1] = new Path(x, y);
+        }
+        return path;
+    }
+
+    /**
+     * Packs the result of the algorithm into the record.
+     * @param status WIN, LOSE or BAD_FIELD.
+     * @param path Found path if status is WIN.
+     * @return the record as 2 longs: {first 8 bytes, last 8 bytes}.
+     */
+    static long[] encode(int status, Path[] path) {
+        long low = 0, high = 0;
+        if (status == WIN) {
+            if (path.length - 1 > MAX_STEPS)
+                return new long[]{LONG_PATH, 0};
+            for (int i = 1; i < path.length; i++) {
+                int direction = getDirection(path[i].x - path[i - 1].x, path[i].y - path[i - 1].y);
+                if (direction < 0)
+                    return new long[]{LONG_PATH, 0};
+                if (i - 1 < 15) low |= (long) direction << 18 + 3 * (i - 1);
+                else high |= (long) direction << 3 * (i - 16);
+            }
+            low |= (long) cell(path[0]) << 3 | (long) (path.length - 1) << 10;
+        }
+        return new long[]{low | status, high};
+    }
+
+    /**
+     * Returns index of the movement in Stencil.MOVEMENT.
+     * @param dx Shift by x axes.
+     * @param dy Shift by y axes.
+     * @return index of the movement, -1 if it is not a movement to the neighbour cell.
+     */
+    private static int getDirection(int dx, int dy) {
+        for (int i = 0; i < Stencil.MOVEMENT.size(); i++) {
+            if (Stencil.MOVEMENT.dx(i) == dx && Stencil.MOVEMENT.dy(i) == dy)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns index of the cell of the agent on the 9x9 field.
+     * @param agent Agent.
+     * @return index of the cell.
+     */
+    private static int cell(Agent agent) {
+        return agent.y * Game.SIZE + agent.x;
+    }
+
+    /**
+     * Returns index of the pair (Filch, Cat).
+     * @param filch Cell of Filch, not 0.
+     * @param cat Cell of Mrs. Norris, not 0 and not Filch's cell.
+     * @return index of the pair.
+     */
+    static int getPairIndex(int filch, int cat) {
+        return (filch - 1) * (CELLS - 2) + cat - 1 - (cat > filch ? 1 : 0);
+    }
+
+    /**
+     * Returns cells where book, cloak and exit can be placed: all cells except Harry's cell
+     * and perception zones of Filch and Mrs. Norris.
+     * @param filch Cell of Filch.
+     * @param cat Cell of Mrs. Norris.
+     * @return bitboard of the free cells.
+     */
+    static long[] getFreeCells(int filch, int cat) {
+        long[] free = new long[(CELLS + 63) >>> 6];
+        for (int i = 1; i < CELLS; i++)
+            free[i >>> 6] |= 1L << i;
+        clearZone(free, filch, 5 / 2);
+        clearZone(free, cat, 3 / 2);
+        return free;
+    }
+
+    /**
+     * Clears the square zone around the cell.
+     * @param bits Bitboard.
+     * @param cell Center of the zone.
+     * @param step Radius of the zone.
+     */
+    private static void clearZone(long[] bits, int cell, int step) {
+        int cx = cell % Game.SIZE, cy = cell / Game.SIZE;
+        for (int y = Math.max(cy - step, 0); y <= Math.min(cy + step, Game.SIZE - 1); y++) {
+            for (int x = Math.max(cx - step, 0); x <= Math.min(cx + step, Game.SIZE - 1); x++) {
+                int i = y * Game.SIZE + x;
+                bits[i >>> 6] &= ~(1L << i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of configurations (book, cloak, exit) for the free cells.
+     * @param free Bitboard of the free cells.
+     * @return the number of configurations.
+     */
+    static long getConfigurationCount(long[] free) {
+        long n = count(free, CELLS);
+        return n < 3 ? 0 : n * (n - 1) * (n - 2);
+    }
+
+    /**
+     * Returns dense rank of the configuration among configurations of the free cells.
+     * @param free Bitboard of the free cells.
+     * @param book Cell of the book.
+     * @param cloak Cell of the cloak.
+     * @param exit Cell of the exit.
+     * @return rank of the configuration.
+     */
+    static long getConfigurationRank(long[] free, int book, int cloak, int exit) {
+        long n = count(free, CELLS);
+        int b = count(free, book);
+        int c = count(free, cloak) - (book < cloak ? 1 : 0);
+        int e = count(free, exit) - (book < exit ? 1 : 0) - (cloak < exit ? 1 : 0);
+        return (b * (n - 1) + c) * (n - 2) + e;
+    }
+
+    /**
+     * Counts set bits below the cell.
+     * @param bits Bitboard.
+     * @param cell Index of the cell.
+     * @return the number of set bits with index less than the cell.
+     */
+    private static int count(long[] bits, int cell) {
+        int result = 0;
+        for (int i = 0; i < cell >>> 6; i++)
+            result += Long.bitCount(bits[i]);
+        if ((cell & 63) != 0)
+            result += Long.bitCount(bits[cell >>> 6] & (1L << cell) - 1);
+        return result;
+    }
+
+    /**
+     * Checks the bit of the cell.
+     * @param bits Bitboard.
+     * @param cell Index of the cell.
+     * @return true if the bit is set.
+     */
+    static boolean isSet(long[] bits, int cell) {
+        return (bits[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
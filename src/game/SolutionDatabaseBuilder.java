@@ -0,0 +1,202 @@
+package game;
+
+import agents.*;
+import algorithm.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Offline builder of SolutionDatabase. Enumerates all games on the 9x9 field which can be generated randomly
+ * and solves them with Backtracking and A star for both scenarios in parallel (by pairs of Filch and Mrs. Norris).
+ * The range of pairs can be given to build the database by parts, pairs outside of the range stay unknown.
+ * Usage from the console:
+ * <pre>
+ * java game.SolutionDatabaseBuilder file [first pair] [last pair]
+ * </pre>
+ * Note: the full database has about 1 billion configurations (about 67 GB), build it by parts or on a big machine.
+ */
+public class SolutionDatabaseBuilder {
+    private final long[] offsets = new long[SolutionDatabase.PAIRS + 1];
+
+    public SolutionDatabaseBuilder() {
+        for (int filch = 1; filch < SolutionDatabase.CELLS; filch++) {
+            for (int cat = 1; cat < SolutionDatabase.CELLS; cat++) {
+                if (cat == filch) continue;
+                int pair = SolutionDatabase.getPairIndex(filch, cat);
+                offsets[pair + 1] = SolutionDatabase.getConfigurationCount(SolutionDatabase.getFreeCells(filch, cat));
+            }
+        }
+        for (int i = 0; i < SolutionDatabase.PAIRS; i++)
+            offsets[i + 1] += offsets[i];
+    }
+
+    /**
+     * Returns the number of configurations in the full database.
+     * @return the number of configurations.
+     */
+    public long getConfigurationCount() {
+        return offsets[SolutionDatabase.PAIRS];
+    }
+
+    /**
+     * Writes the header and records for the range of pairs (Filch, Cat).
+     * @param fileName Name of the file. Existing records outside of the range are kept.
+     * @param from The first pair.
+     * @param to The last pair (exclusive).
+     * @param pool Pool for parallel solving.
+     * @throws IOException If the file cannot be written.
+     */
+    public void build(String fileName, int from, int to, ForkJoinPool pool) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(SolutionDatabase.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SolutionDatabase.MAGIC).putInt(SolutionDatabase.VERSION)
+                    .putInt(Game.SIZE).putInt(Game.SIZE).putInt(SolutionDatabase.PAIRS);
+            for (long offset : offsets)
+                header.putLong(offset);
+            header.clear();
+            channel.write(header, 0);
+
+            PairsTask task = new PairsTask(channel, from, to);
+            pool.invoke(task);
+            if (task.error != null)
+                throw task.error;
+        }
+    }
+
+    /**
+     * Solves all configurations of the pair and writes them to the file.
+     * @param channel File of the database.
+     * @param filch Cell of Filch.
+     * @param cat Cell of Mrs. Norris.
+     * @throws IOException If the file cannot be written.
+     */
+    private void buildPair(FileChannel channel, int filch, int cat) throws IOException {
+        int pair = SolutionDatabase.getPairIndex(filch, cat);
+        long count = offsets[pair + 1] - offsets[pair];
+        if (count == 0) return;
+        ByteBuffer records = ByteBuffer.allocate((int) (count * SolutionDatabase.RECORDS_PER_CONFIGURATION
+                * SolutionDatabase.RECORD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        long[] free = SolutionDatabase.getFreeCells(filch, cat);
+        int size = Game.SIZE;
+        // Configurations are enumerated in the order of their dense rank
+        for (int book = 0; book < SolutionDatabase.CELLS; book++) {
+            if (!SolutionDatabase.isSet(free, book)) continue;
+            for (int cloak = 0; cloak < SolutionDatabase.CELLS; cloak++) {
+                if (cloak == book || !SolutionDatabase.isSet(free, cloak)) continue;
+                for (int exit = 0; exit < SolutionDatabase.CELLS; exit++) {
+                    if (exit == book || exit == cloak || !SolutionDatabase.isSet(free, exit)) continue;
+                    for (int scenario = 1; scenario <= 2; scenario++) {
+                        Game game;
+                        try {
+                            game = new Game(new Harry(0, 0, scenario),
+                                    new Filch(filch % size, filch / size), new Cat(cat % size, cat / size),
+                                    new Book(book % size, book / size), new Cloak(cloak % size, cloak / size),
+                                    new Exit(exit % size, exit / size));
+                        } catch (IncorrectDataException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        put(records, game, new Backtracking(game.getField()));
+                        put(records, game, new AStar(game.getField()));
+                    }
+                }
+            }
+        }
+        records.flip();
+        long position = SolutionDatabase.HEADER_SIZE + offsets[pair] * SolutionDatabase.RECORDS_PER_CONFIGURATION
+                * SolutionDatabase.RECORD_SIZE;
+        while (records.hasRemaining())
+            position += channel.write(records, position);
+    }
+
+    /**
+     * Solves the game and puts the record to the buffer.
+     * @param records Buffer with records.
+     * @param game Game to solve.
+     * @param algorithm Algorithm for the field of the game.
+     */
+    private static void put(ByteBuffer records, Game game, Algorithm algorithm) {
+        long[] record;
+        if (game.isBadField()) {
+            record = SolutionDatabase.encode(SolutionDatabase.BAD_FIELD, null);
+        } else {
+            try {
+                record = SolutionDatabase.encode(SolutionDatabase.WIN,
+                        algorithm.getMinimalPath(game.getHarry(), game.getExit()));
+            } catch (NoPathException | IncorrectDataException e) {
+                record = SolutionDatabase.encode(SolutionDatabase.LOSE, null);
+            }
+        }
+        records.putLong(record[0]).putLong(record[1]);
+    }
+
+    /**
+     * Task which builds the range of pairs, splits the range if it is too big.
+     */
+    private class PairsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final int from, to;     // range of the pairs [from, to).
+        private IOException error;      // first error of the task and its subtasks.
+
+        PairsTask(FileChannel channel, int from, int to) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                PairsTask left = new PairsTask(channel, from, middle);
+                PairsTask right = new PairsTask(channel, middle, to);
+                invokeAll(left, right);
+                error = left.error != null ? left.error : right.error;
+                return;
+            }
+            if (from >= to) return;
+            // Restore cells from the index of the pair
+            int filch = from / (SolutionDatabase.CELLS - 2) + 1;
+            int cat = from % (SolutionDatabase.CELLS - 2) + 1;
+            if (cat >= filch) cat++;
+            try {
+                buildPair(channel, filch, cat);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Launches the builder from the console.
+     * @param args file [first pair] [last pair]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Expected arguments: file [first pair] [last pair]");
+            return;
+        }
+        try {
+            int from = args.length >= 2 ? Integer.parseInt(args[1]) : 0;
+            int to = args.length >= 3 ? Integer.parseInt(args[2]) : SolutionDatabase.PAIRS;
+            SolutionDatabaseBuilder builder = new SolutionDatabaseBuilder();
+            System.out.println("Configurations: " + builder.getConfigurationCount()
+                    + ", pairs: " + from + "-" + to + " of " + SolutionDatabase.PAIRS);
+            long time = System.currentTimeMillis();
+            builder.build(args[0], from, Math.min(to, SolutionDatabase.PAIRS), ForkJoinPool.commonPool());
+            System.out.println("Time: " + (System.currentTimeMillis() - time) + " ms");
+        } catch (NumberFormatException e) {
+            System.out.println("Range of pairs must be integers. Given: " + String.join(" ", args));
+        } catch (IOException e) {
+            System.out.println("Error while writing the database: " + e.getMessage());
+        }
+    }
+}
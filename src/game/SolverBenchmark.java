@@ -0,0 +1,208 @@
+package game;
+
+import algorithm.*;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Micro benchmark of the algorithms on the fixed seeded corpus of games.
+ * For each algorithm, scenario and size of the field it reports:
+ * throughput (solves per second), average time per solve, allocated bytes per solve and GC activity.
+ * Each iteration solves all games of the corpus in a loop, first iterations are warmup for JIT.
+ * Usage from the console:
+ * <pre>
+ * java game.SolverBenchmark [sizes] [iterations] [iteration ms]
+ * java game.SolverBenchmark 9,20,40 5 1000
+ * </pre>
+ * Note: for accurate results launch it on the idle machine, e.g. with -Xms1g -Xmx1g to avoid heap resizing.
+ */
+public class SolverBenchmark {
+    /**
+     * Seed of the corpus. Must not be changed to keep results comparable.
+     */
+    private static final long SEED = 20220301L;
+    /**
+     * Number of random games in the corpus for each size of the field.
+     */
+    private static final int GAMES = 32;
+    private static final int WARMUP_ITERATIONS = 3;
+    /**
+     * Number of landmarks of ALT heuristics for A star.
+     */
+    private static final int LANDMARKS = 8;
+
+    private final int iterations;       // number of measured iterations.
+    private final long iterationNanos;  // duration of one iteration.
+    private long sink;                  // consumes results to prevent dead code elimination.
+
+    public SolverBenchmark(int iterations, long iterationMillis) {
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    /**
+     * Creates the corpus: games from the task (only for 9x9) and seeded random games without bad fields.
+     * @param scenario Scenario for Harry.
+     * @param size Width and height of the field.
+     * @return Games of the corpus.
+     * @throws IncorrectDataException If the games cannot be created.
+     */
+    static List<Game> getCorpus(int scenario, int size) throws IncorrectDataException {
+        List<Game> games = new ArrayList<>();
+        if (size == Game.SIZE) {
+            games.add(Main.getExampleGame(scenario));
+            games.add(Main.getInterestingField1(scenario));
+            games.add(Main.getInterestingField2(scenario));
+        }
+        FieldGenerator generator = new FieldGenerator(size, size, SEED + size).skipBadFields(true);
+        while (games.size() < GAMES)
+            games.add(generator.next(scenario));
+        return games;
+    }
+
+    /**
+     * Measures the algorithm on the corpus and prints the result.
+     * @param name Name of the algorithm.
+     * @param factory Creates the algorithm for the given field.
+     * @param scenario Scenario for Harry.
+     * @param size Width and height of the field.
+     * @throws IncorrectDataException If the corpus cannot be created.
+     */
+    public void measure(String name, Function<Field, Algorithm> factory, int scenario, int size)
+            throws IncorrectDataException {
+        List<Game> games = getCorpus(scenario, size);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            iteration(factory, games);
+
+        double[] throughput = new double[iterations];
+        long solves = 0, nanos = 0, bytes = 0, gcCount = 0, gcMillis = 0;
+        for (int i = 0; i < iterations; i++) {
+            long gcCountBefore = getGcCount(), gcMillisBefore = getGcMillis();
+            long bytesBefore = getAllocatedBytes();
+            long time = System.nanoTime();
+            long count = iteration(factory, games);
+            time = System.nanoTime() - time;
+            bytes += getAllocatedBytes() - bytesBefore;
+            gcCount += getGcCount() - gcCountBefore;
+            gcMillis += getGcMillis() - gcMillisBefore;
+            solves += count;
+            nanos += time;
+            throughput[i] = count * 1e9 / time;
+        }
+
+        double mean = 0, deviation = 0;
+        for (double t : throughput) mean += t;
+        mean /= iterations;
+        for (double t : throughput) deviation += (t - mean) * (t - mean);
+        deviation = iterations > 1 ? Math.sqrt(deviation / (iterations - 1)) : 0;
+
+        System.out.printf(Locale.ROOT, "%-12s s%d %4dx%-4d %12.1f +- %8.1f ops/s %14.1f ns/op %12.1f B/op %5d gc %6d ms%n",
+                name, scenario, size, size, mean, deviation, (double) nanos / solves,
+                bytes < 0 ? Double.NaN : (double) bytes / solves, gcCount, gcMillis);
+    }
+
+    /**
+     * Solves all games of the corpus until the iteration time is over.
+     * @param factory Creates the algorithm for the given field.
+     * @param games Corpus of the games.
+     * @return the number of solved games.
+     */
+    private long iteration(Function<Field, Algorithm> factory, List<Game> games) {
+        long count = 0;
+        long end = System.nanoTime() + iterationNanos;
+        PackedPath path = new PackedPath();
+        do {
+            for (Game game : games) {
+                Algorithm algorithm = factory.apply(game.getField());
+                try {
+                    algorithm.getMinimalPath(game.getHarry(), game.getExit(), path);
+                    sink += path.size();
+                } catch (NoPathException | IncorrectDataException e) {
+                    sink--;
+                }
+                count++;
+            }
+        } while (System.nanoTime() < end);
+        return count;
+    }
+
+    /**
+     * Returns the amount of bytes allocated by the current thread, -1 if JVM does not support it.
+     * @return the amount of allocated bytes.
+     */
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    /**
+     * Returns total number of garbage collections.
+     * @return total number of garbage collections.
+     */
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(bean.getCollectionCount(), 0);
+        return count;
+    }
+
+    /**
+     * Returns total time of garbage collections.
+     * @return total time of garbage collections in milliseconds.
+     */
+    private static long getGcMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(bean.getCollectionTime(), 0);
+        return time;
+    }
+
+    /**
+     * Creates ALT heuristics for the field.
+     * @param field The game field.
+     * @return heuristics with LANDMARKS landmarks.
+     */
+    private static Heuristic getLandmarks(Field field) {
+        try {
+            return new LandmarkHeuristic(field, LANDMARKS);
+        } catch (IncorrectDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Launches the benchmark for all algorithms and both scenarios.
+     * @param args [sizes] [iterations] [iteration ms], e.g. "9,20 5 1000".
+     */
+    public static void main(String[] args) {
+        try {
+            String[] sizes = (args.length >= 1 ? args[0] : String.valueOf(Game.SIZE)).split(",");
+            int iterations = args.length >= 2 ? Integer.parseInt(args[1]) : 5;
+            long millis = args.length >= 3 ? Long.parseLong(args[2]) : 1000;
+            SolverBenchmark benchmark = new SolverBenchmark(iterations, millis);
+            // Landmarks are calculated once for each field of the corpus and reused by all solves
+            Map<Field, Heuristic> landmarks = new IdentityHashMap<>();
+            for (String size : sizes) {
+                for (int scenario = 1; scenario <= 2; scenario++) {
+                    benchmark.measure("Backtracking", Backtracking::new, scenario, Integer.parseInt(size));
+                    benchmark.measure("AStar", AStar::new, scenario, Integer.parseInt(size));
+                    benchmark.measure("AStarALT", field -> new AStar(field,
+                            landmarks.computeIfAbsent(field, SolverBenchmark::getLandmarks)), scenario, Integer.parseInt(size));
+                    benchmark.measure("LayeredSearch", LayeredSearch::new, scenario, Integer.parseInt(size));
+                    benchmark.measure("JumpPointSearch", JumpPointSearch::new, scenario, Integer.parseInt(size));
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Sorry, but input data is incorrect");
+            System.out.println("Arguments must be integers. Given: " + String.join(" ", args));
+        } catch (IncorrectDataException e) {
+            System.out.println("Sorry, but input data is incorrect");
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package game;
+
+import algorithm.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running HTTP service which solves games on request, so the JVM stays warm between the games
+ * instead of being started for each of them. The service listens only on the loopback address.
+ * <p>
+ * Each request is handled by its own virtual thread (or by a thread of the cached pool on JDK before 21),
+ * the number of games solved at the same time is limited by the number of processors, other requests wait.
+ * <pre>
+ * POST /solve?algorithm=AStar&amp;width=9&amp;height=9
+ *      text body: the two lines of the console input (coordinates of the agents and scenario)
+ *      or body of type application/octet-stream: one 16-byte record of ScenarioCorpus
+ * GET  /metrics
+ *      queue depth, requests in flight, counters and latency percentiles of the last requests
+ * </pre>
+ * Usage from the console:
+ * <pre>
+ * java game.SolverServer [port]
+ * </pre>
+ */
+public class SolverServer {
+    /**
+     * Default port of the service.
+     */
+    public static final int PORT = 8093;
+
+    private static final int MAX_BODY = 4096;           // maximal size of the request in bytes.
+    private static final int LATENCY_WINDOW = 8192;     // number of the last requests for percentiles.
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Algorithm> algorithms = BulkSolver.getAlgorithms();     // shared by all requests.
+    private final Semaphore solvers;                    // permits for the games solved at the same time.
+    private final AtomicInteger waiting = new AtomicInteger();     // requests waiting for a permit.
+    private final AtomicInteger inFlight = new AtomicInteger();    // requests being handled.
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_WINDOW];     // ring of the last latencies in ns.
+    private long requests;              // number of recorded latencies, guarded by latencies.
+
+    /**
+     * Creates the service on the loopback address, call start() to accept requests.
+     * @param port Port of the service, 0 for any free port.
+     * @param parallelism Maximal number of games solved at the same time.
+     * @throws IOException If the port cannot be bound.
+     */
+    public SolverServer(int port, int parallelism) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = newThreadPerRequestExecutor();
+        this.solvers = new Semaphore(parallelism);
+        server.setExecutor(executor);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the service, requests in flight are given the delay to complete.
+     * @param delay Maximal time to wait for requests in seconds.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port of the service.
+     * @return the bound port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles /solve: reads the game, waits for a free solver and writes the result.
+     * @param exchange Request and response.
+     * @throws IOException If the connection is broken.
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                failed.incrementAndGet();
+                send(exchange, 405, "Expected POST request with the game");
+                return;
+            }
+            String response;
+            try {
+                response = solve(exchange);
+            } catch (IncorrectDataException e) {
+                failed.incrementAndGet();
+                send(exchange, 400, "Sorry, but input data is incorrect\n" + e.getMessage());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.incrementAndGet();
+                send(exchange, 503, "The service is stopping");
+                return;
+            }
+            send(exchange, 200, response);
+            completed.incrementAndGet();
+            record(System.nanoTime() - start);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the game of the request and solves it.
+     * @param exchange Request.
+     * @return text of the response in the format of the console output.
+     * @throws IncorrectDataException If the parameters or the game are incorrect.
+     * @throws InterruptedException If the thread is interrupted while waiting for a solver.
+     * @throws IOException If the body cannot be read.
+     */
+    private String solve(HttpExchange exchange) throws IncorrectDataException, InterruptedException, IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        String name = query.getOrDefault("algorithm", "AStar");
+        Algorithm algorithm = algorithms.get(name);
+        if (algorithm == null)
+            throw new IncorrectDataException("Unknown algorithm: " + name + ". Expected one of " + algorithms.keySet());
+        int width = parseSize(query, "width"), height = parseSize(query, "height");
+        if ((long) width * height > ScenarioCorpus.MAX_CELLS)
+            throw new IncorrectDataException("The field " + width + "x" + height + " is too large");
+
+        byte[] body = readBody(exchange.getRequestBody());
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        Game game;
+        if (type != null && type.startsWith("application/octet-stream")) {
+            if (body.length != ScenarioCorpus.RECORD_SIZE)
+                throw new IncorrectDataException("Expected one record of " + ScenarioCorpus.RECORD_SIZE
+                        + " bytes. Given: " + body.length);
+            ByteBuffer record = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+            game = ScenarioCorpus.decode(record.getLong(), record.getLong(), width, height);
+        } else {
+            String[] lines = new String(body, StandardCharsets.UTF_8).split("\r?\n", -1);
+            game = Main.parseGame(lines[0], lines.length > 1 ? lines[1] : null, width, height);
+        }
+        if (game.isBadField())
+            return name + "\nLoss due to wrong field\n";
+
+        waiting.incrementAndGet();
+        try {
+            solvers.acquire();
+        } finally {
+            waiting.decrementAndGet();
+        }
+        try {
+            PackedPath path = new PackedPath();
+            long time = System.nanoTime();
+            try {
+                algorithm.getMinimalPath(game.getField(), game.getHarry(), game.getExit(), path, SearchStatistics.NONE);
+            } catch (NoPathException e) {
+                return algorithm + "\nLose!\nTime: " + (System.nanoTime() - time) + " ns\n";
+            }
+            time = System.nanoTime() - time;
+            StringBuilder sb = new StringBuilder();
+            sb.append(algorithm).append("\nWin!\nNumber of steps: ").append(path.getSteps()).append("\nPath:");
+            for (int i = 0; i < path.size(); i++) {
+                int cell = path.getCell(i);
+                sb.append(" [").append(cell % width).append(',').append(cell / width).append(']');
+            }
+            return sb.append("\nTime: ").append(time).append(" ns\n").toString();
+        } finally {
+            solvers.release();
+        }
+    }
+
+    /**
+     * Handles /metrics: writes the current load and latencies of the service.
+     * @param exchange Request and response.
+     * @throws IOException If the connection is broken.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        long[] sorted;
+        long total;
+        synchronized (latencies) {
+            total = requests;
+            sorted = Arrays.copyOf(latencies, (int) Math.min(requests, LATENCY_WINDOW));
+        }
+        Arrays.sort(sorted);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Queue depth: ").append(waiting.get()).append('\n');
+        sb.append("In flight: ").append(inFlight.get()).append('\n');
+        sb.append("Completed: ").append(completed.get()).append('\n');
+        sb.append("Failed: ").append(failed.get()).append('\n');
+        sb.append("Latency (last ").append(sorted.length).append(" of ").append(total).append(" requests), us:");
+        sb.append(" p50 ").append(percentile(sorted, 50));
+        sb.append(", p90 ").append(percentile(sorted, 90));
+        sb.append(", p99 ").append(percentile(sorted, 99));
+        sb.append(", max ").append(sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000).append('\n');
+        send(exchange, 200, sb.toString());
+    }
+
+    /**
+     * Records the latency of the completed request.
+     * @param nanos Time from receiving the request to sending the response in ns.
+     */
+    private void record(long nanos) {
+        synchronized (latencies) {
+            latencies[(int) (requests++ % LATENCY_WINDOW)] = nanos;
+        }
+    }
+
+    /**
+     * Returns the percentile of the sorted latencies (nearest rank).
+     * @param sorted Sorted latencies in ns.
+     * @param percent Percentile from 1 to 100.
+     * @return the latency in us, 0 if there are no latencies.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(sorted.length * percent / 100.0);
+        return sorted[Math.max(rank, 1) - 1] / 1000;
+    }
+
+    /**
+     * Reads the parameters from the query of the request, e.g. "algorithm=AStar&width=9".
+     * @param uri URI of the request.
+     * @return values of the parameters by their names.
+     */
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getQuery();
+        if (raw == null)
+            return query;
+        for (String parameter : raw.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0)
+                query.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+        }
+        return query;
+    }
+
+    /**
+     * Reads the size of the field from the query.
+     * @param query Parameters of the request.
+     * @param name Name of the parameter.
+     * @return the size, Game.SIZE if the parameter is not given.
+     * @throws IncorrectDataException If the size is not a positive integer.
+     */
+    private static int parseSize(Map<String, String> query, String name) throws IncorrectDataException {
+        String value = query.get(name);
+        if (value == null)
+            return Game.SIZE;
+        try {
+            int size = Integer.parseInt(value);
+            if (size > 0)
+                return size;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IncorrectDataException("The " + name + " of the field must be positive integer. Given: " + value);
+    }
+
+    /**
+     * Reads the body of the request.
+     * @param input Body of the request.
+     * @return all bytes of the body.
+     * @throws IncorrectDataException If the body is longer than MAX_BODY.
+     * @throws IOException If the body cannot be read.
+     */
+    private static byte[] readBody(InputStream input) throws IncorrectDataException, IOException {
+        try (input) {
+            byte[] body = input.readNBytes(MAX_BODY + 1);
+            if (body.length > MAX_BODY)
+                throw new IncorrectDataException("The request must not be longer than " + MAX_BODY + " bytes");
+            return body;
+        }
+    }
+
+    /**
+     * Writes the text response and closes the exchange.
+     * @param exchange Request and response.
+     * @param status HTTP status code.
+     * @param text Body of the response.
+     * @throws IOException If the connection is broken.
+     */
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Creates the executor which starts a virtual thread for each request.
+     * Virtual threads are created through reflection, so the service also runs on JDK before 21,
+     * there the cached pool of platform threads is used.
+     * @return the executor of the requests.
+     */
+    private static ExecutorService newThreadPerRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Launches the service from the console, it works until the process is stopped.
+     * @param args [port]
+     */
+    public static void main(String[] args) {
+        try {
+            int port = args.length >= 1 ? Integer.parseInt(args[0]) : PORT;
+            SolverServer server = new SolverServer(port, Runtime.getRuntime().availableProcessors());
+            server.start();
+            System.out.println("Solver server: http://localhost:" + server.getPort() + "/solve, /metrics");
+        } catch (NumberFormatException e) {
+            System.out.println("Port must be integer. Given: " + args[0]);
+        } catch (IOException e) {
+            System.out.println("Error while starting the server: " + e.getMessage());
+        }
+    }
+}
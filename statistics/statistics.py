@@ -1,83 +1,54 @@
 import os, sys, subprocess
 
 
-def get_output(scenario: int) -> str:
-	data, temp = os.pipe()
-	os.write(temp, bytes(f"\n{scenario}\n", "utf-8"))
-	os.close(temp)
-	output = subprocess.check_output('java /home/yesliesnayder/projects/IdeaProjects/AIBookFinding/src/AndreyKuzmickiy.java', stdin=data, shell=True)
-	return output.decode('utf-8').split('\n')
-	
+# Directory with compiled classes, e.g.: javac -d out $(find src -name '*.java')
+CLASSES = os.environ.get('BOOK_FINDING_CLASSES',
+		os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'out'))
 
 
-def check_statistics(scenario: int, count: int):
-	counter = 0	# How many times program was called
-	b_winrate = 0	# How many times Backtracking won
-	a_winrate = 0	# How many times A star won
-	loses = 0	# How many times Harry loss by poor field
-	
-	b_min_time = None	# Minimal working time for Backtracking
-	a_min_time = None	# Minimal working time for A star
-	b_max_time = 0		# Maximum working time for Backtracking
-	a_max_time = 0		# Maximum working time for A star
-	b_time = 0	    	# Working time for Backtracking
-	a_time = 0	    	# Working time for A star
+def get_output(scenario: int, count: int) -> list:
+	# One JVM plays all games: each line is "game algorithm WIN|LOSE|ERROR|BAD steps nanos nodes ... optimalSteps"
+	output = subprocess.check_output(['java', '-cp', CLASSES, 'game.BatchSimulator', str(count), str(scenario)])
+	return [line.split(' ') for line in output.decode('utf-8').split('\n') if line]
+
 
-	b_min_steps = None	# Minimal number of steps for Backtracking
-	a_min_steps = None	# Minimal number of steps for A star
-	b_max_steps = 0		# Maximum number of steps for Backtracking
-	a_max_steps = 0		# Maximum number of steps for A star
-	b_steps = 0	    	# Number of steps for Backtracking
-	a_steps = 0	    	# Number of steps for A star
+def print_algorithm(name: str, runs: list, games: int):
+	wins = [r for r in runs if r[2] == 'WIN']
+	errors = len([r for r in runs if r[2] == 'ERROR'])	# Games where the algorithm failed with an exception
+	times = [int(r[4]) / 1e6 for r in runs]	# Working time in ms
+	steps = [int(r[3]) for r in wins]		# Number of steps of won games
+	nodes = [int(r[5]) for r in runs]		# Number of expanded cells
+	possible = [r for r in runs if int(r[13]) >= 0]	# Games which can be won (optimal path exists)
+	gaps = [int(r[3]) - int(r[13]) for r in wins if int(r[13]) >= 0]	# Extra steps over the optimal path
+	invalid = len([g for g in gaps if g < 0]) + len(wins) - len(gaps)	# Shorter than optimal: blocked cells in the path
+	gaps = [g for g in gaps if g >= 0]
 
-	
-	for i in range(count):
-		counter += 1
-		output = get_output(scenario)
-		if output[11] == 'Loss due to wrong field':
-			loses += 1
-			continue
-		if output[12] == 'Lose!':
-			a_starting_point = 15
-		elif output[12] == 'Win!':
-			a_starting_point = 27
-			b_winrate += 1
-			steps = int(output[13].split(' ')[-1])
-			b_steps += steps
-			if b_min_steps is None or b_min_steps > steps:
-				b_min_steps = steps
-			if b_max_steps is None or b_max_steps < steps:
-				b_max_steps = steps
-			t = int(output[24].split(' ')[-2])
-			b_time += t
-			if b_min_time is None or b_min_time > t:
-				b_min_time = t
-			if b_max_time is None or b_max_time < t:
-				b_max_time = t
-		if output[a_starting_point] == 'Win!':
-			a_winrate += 1
-			steps = int(output[a_starting_point+1].split(' ')[-1])
-			a_steps += steps
-			if a_min_steps is None or a_min_steps > steps:
-				a_min_steps = steps
-			if a_max_steps is None or a_max_steps < steps:
-				a_max_steps = steps
-		t = int(output[a_starting_point+12].split(' ')[-2])
-		a_time += t
-		if a_min_time is None or a_min_time > t:
-			a_min_time = t
-		if a_max_time is None or a_max_time < t:
-			a_max_time = t
-		
-	print(f'Counter: {counter}, Loses: {loses}, Loss rate: {(counter-loses) / counter}')
-	print('-----   Backtracking   -----')
-	print(f'Win: {b_winrate}, Lose: {counter-loses-b_winrate}, Win rate: {b_winrate / (counter-loses)}')
-	print(f'Average time: {b_time / (counter-loses)} ms, Min time: {b_min_time} ms, Max time: {b_max_time} ms')
-	print(f'Average steps: {b_steps / (counter-loses)}, Min steps: {b_min_steps}, Max steps: {b_max_steps}')
-	print('--------   A star   --------')
-	print(f'Win: {a_winrate}, Lose: {counter-loses-a_winrate}, Win rate: {a_winrate / (counter-loses)}')
-	print(f'Average time: {a_time / (counter-loses)} ms, Min time: {a_min_time} ms, Max time: {a_max_time} ms')
-	print(f'Average steps: {a_steps / (counter-loses)}, Min steps: {a_min_steps}, Max steps: {a_max_steps}')
+	print(f'-----   {name}   -----')
+	print(f'Win: {len(wins)}, Lose: {games-len(wins)-errors}, Errors: {errors}, Win rate: {len(wins) / games if games else 0}')
+	if times:
+		print(f'Average time: {sum(times) / len(times)} ms, Min time: {min(times)} ms, Max time: {max(times)} ms')
+		print(f'Average nodes: {sum(nodes) / len(nodes)}, Min nodes: {min(nodes)}, Max nodes: {max(nodes)}')
+	if steps:
+		print(f'Average steps: {sum(steps) / len(steps)}, Min steps: {min(steps)}, Max steps: {max(steps)}')
+	if games:
+		print(f'Optimal win rate: {len(possible) / games}, Win rate gap: {(len(possible) - len(wins)) / games}')
+	if gaps:
+		print(f'Average step gap: {sum(gaps) / len(gaps)}, Max step gap: {max(gaps)}, '
+			f'Optimal paths: {len([g for g in gaps if g == 0]) / len(gaps)}, Invalid paths: {invalid}')
+
+
+def check_statistics(scenario: int, count: int):
+	results = get_output(scenario, count)
+	loses = len({r[0] for r in results if r[2] == 'BAD'})	# How many times Harry loss by poor field
+	games = count - loses
+
+	print(f'Counter: {count}, Loses: {loses}, Loss rate: {games / count}')
+	algorithms = []
+	for r in results:
+		if r[1] not in algorithms:
+			algorithms.append(r[1])
+	for name in algorithms:
+		print_algorithm(name, [r for r in results if r[1] == name and r[2] != 'BAD'], games)
 
 
 if __name__ == '__main__':
@@ -89,10 +60,10 @@ if __name__ == '__main__':
 		c1, c2 = int(sys.argv[1]), int(sys.argv[2])
 	else:
 		print('Incorrect params')
+		sys.exit(1)
 
 	print('----------     The first scenario     ----------')
 	check_statistics(1, c1)
 	print()
 	print('----------     The second scenario     ---------')
 	check_statistics(2, c2)
-
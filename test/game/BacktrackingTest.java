@@ -0,0 +1,54 @@
+package game;
+
+import algorithm.*;
+
+/**
+ * Checks of Backtracking on the games where no combination of its passes reaches the exit.
+ * Run: java -cp out game.BacktrackingTest
+ */
+public class BacktrackingTest {
+
+    public static void main(String[] args) throws IncorrectDataException {
+        exitFromAnotherBook();
+        pathsOfTheCorpus();
+        System.out.println("BacktrackingTest: OK");
+    }
+
+    /**
+     * The book is found only by the pass with cloak and the exit is reached only without it,
+     * so there is no whole path and the game is lost.
+     * @throws IncorrectDataException If the game cannot be created.
+     */
+    private static void exitFromAnotherBook() throws IncorrectDataException {
+        Game game = Main.parseGame("[0,0] [3,7] [7,5] [7,8] [2,2] [0,5]", "2", Game.SIZE, Game.SIZE);
+        try {
+            new Backtracking().getMinimalPath(game.getField(), game.getHarry(), game.getExit());
+        } catch (NoPathException e) {
+            return;
+        }
+        throw new AssertionError("the game without the whole path is won");
+    }
+
+    /**
+     * Each found path on the seeded games goes from Harry to the exit.
+     * @throws IncorrectDataException If the game cannot be generated.
+     */
+    private static void pathsOfTheCorpus() throws IncorrectDataException {
+        FieldGenerator generator = new FieldGenerator(Game.SIZE, Game.SIZE, Game.SIZE).skipBadFields(true);
+        Backtracking backtracking = new Backtracking();
+        PackedPath path = new PackedPath();
+        for (int i = 0; i < 5000; i++) {
+            Game game = generator.next(i % 2 + 1);
+            try {
+                backtracking.getMinimalPath(game.getField(), game.getHarry(), game.getExit(), path,
+                        SearchStatistics.NONE);
+            } catch (NoPathException e) {
+                continue;
+            }
+            Field field = game.getField();
+            SolutionDatabaseTest.check(path.getCell(0) == field.index(game.getHarry().x, game.getHarry().y)
+                    && path.getCell(path.getSteps()) == field.index(game.getExit().x, game.getExit().y),
+                    "path of the game " + i + " goes from Harry to the exit");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package game;
+
+import agents.Exit;
+import agents.Harry;
+import algorithm.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks of BulkSolver: unexpected failures of the algorithm are recorded per game, the other games are solved.
+ * Run: java -cp out game.BulkSolverTest
+ */
+public class BulkSolverTest {
+    private static final int GAMES = 2000;
+
+    public static void main(String[] args) throws IOException, IncorrectDataException {
+        File corpusFile = File.createTempFile("corpus", ".bin");
+        File resultFile = File.createTempFile("results", ".bin");
+        try {
+            try (ScenarioCorpus.Writer writer = ScenarioCorpus.create(corpusFile.getPath(), Game.SIZE, Game.SIZE)) {
+                FieldGenerator generator = new FieldGenerator(Game.SIZE, Game.SIZE, 11);
+                for (int i = 0; i < GAMES; i++)
+                    writer.add(generator.next(i % 2 + 1));
+            }
+            long[] expected = new long[BulkSolver.ERROR + 1];
+            try (ScenarioCorpus corpus = ScenarioCorpus.open(corpusFile.getPath())) {
+                AStar aStar = new AStar();
+                for (int i = 0; i < GAMES; i++) {
+                    Game game = corpus.getGame(i);
+                    if (game.isBadField()) {
+                        expected[BulkSolver.BAD_FIELD]++;
+                    } else if (game.getHarry().x == 0) {
+                        expected[BulkSolver.ERROR]++;
+                    } else {
+                        try {
+                            aStar.getMinimalPath(game.getField(), game.getHarry(), game.getExit());
+                            expected[BulkSolver.WIN]++;
+                        } catch (NoPathException e) {
+                            expected[BulkSolver.LOSE]++;
+                        }
+                    }
+                }
+            }
+            long[] statuses = new BulkSolver(new FailingAStar(), ForkJoinPool.commonPool())
+                    .solve(corpusFile.getPath(), resultFile.getPath());
+            for (int status = BulkSolver.WIN; status <= BulkSolver.ERROR; status++)
+                SolutionDatabaseTest.check(statuses[status] == expected[status], "games with status " + status
+                        + ": expected " + expected[status] + ", found " + statuses[status]);
+        } finally {
+            corpusFile.delete();
+            resultFile.delete();
+        }
+        System.out.println("BulkSolverTest: OK");
+    }
+
+    /**
+     * A star which fails on every game where Harry starts in the first column.
+     */
+    private static class FailingAStar extends AStar {
+        @Override
+        public void getMinimalPath(Field field, Harry harry, Exit exit, PathSink sink, SearchStatistics statistics)
+                throws NoPathException, IncorrectDataException {
+            if (harry.x == 0)
+                throw new IllegalStateException("Failure on [" + harry.x + "," + harry.y + "]");
+            super.getMinimalPath(field, harry, exit, sink, statistics);
+        }
+    }
+}
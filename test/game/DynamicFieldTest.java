@@ -0,0 +1,74 @@
+package game;
+
+import agents.BadAgent;
+import algorithm.IncorrectDataException;
+
+/**
+ * Checks of DynamicField: only its own copies of the inspectors are moved, the agents of the game are rejected.
+ * Run: java -cp out game.DynamicFieldTest
+ */
+public class DynamicFieldTest {
+
+    public static void main(String[] args) throws IncorrectDataException {
+        agentsOfTheGame();
+        ownInspectors();
+        harryCell();
+        System.out.println("DynamicFieldTest: OK");
+    }
+
+    /**
+     * Filch and Mrs. Norris of the game are equal to the copies, but they are not moved by the field.
+     * @throws IncorrectDataException If the game cannot be created.
+     */
+    private static void agentsOfTheGame() throws IncorrectDataException {
+        Game game = Main.getExampleGame(1);
+        DynamicField field = new DynamicField(game);
+        rejected(field, game.getFilch(), 4, 4, "Filch of the game");
+        rejected(field, game.getCat(), 2, 6, "Mrs. Norris of the game");
+        SolutionDatabaseTest.check(game.getFilch().x == 4 && game.getFilch().y == 2, "Filch of the game is not moved");
+        SolutionDatabaseTest.check(field.is(field.index(4, 2), Field.INSPECTOR), "Filch stays on the field");
+        SolutionDatabaseTest.check(!field.is(field.index(4, 4), Field.INSPECTOR), "no inspector in the rejected cell");
+    }
+
+    /**
+     * The copy of Filch is moved, the agent of the game stays in its cell.
+     * @throws IncorrectDataException If the game cannot be created or the move is rejected.
+     */
+    private static void ownInspectors() throws IncorrectDataException {
+        Game game = Main.getExampleGame(1);
+        DynamicField field = new DynamicField(game);
+        BadAgent filch = field.getInspectors().get(0);
+        field.moveInspector(filch, 4, 4);
+        SolutionDatabaseTest.check(filch.x == 4 && filch.y == 4, "copy of Filch is moved");
+        SolutionDatabaseTest.check(game.getFilch().x == 4 && game.getFilch().y == 2, "Filch of the game is not moved");
+        SolutionDatabaseTest.check(field.is(field.index(4, 4), Field.INSPECTOR), "Filch in the new cell");
+        SolutionDatabaseTest.check(!field.is(field.index(4, 2), Field.INSPECTOR), "no Filch in the old cell");
+    }
+
+    /**
+     * The inspectors cannot step on Harry's cell.
+     * @throws IncorrectDataException If the game cannot be created.
+     */
+    private static void harryCell() throws IncorrectDataException {
+        Game game = Main.getExampleGame(1);
+        DynamicField field = new DynamicField(game);
+        rejected(field, field.getInspectors().get(1), game.getHarry().x, game.getHarry().y, "cell of Harry");
+    }
+
+    /**
+     * Checks that the move is rejected with IncorrectDataException.
+     * @param field Field of the game.
+     * @param inspector Moved inspector.
+     * @param x New x-coordinate of the inspector.
+     * @param y New y-coordinate of the inspector.
+     * @param message Description of the move.
+     */
+    private static void rejected(DynamicField field, BadAgent inspector, int x, int y, String message) {
+        try {
+            field.moveInspector(inspector, x, y);
+        } catch (IncorrectDataException e) {
+            return;
+        }
+        throw new AssertionError("move is not rejected: " + message);
+    }
+}
@@ -0,0 +1,81 @@
+package game;
+
+import algorithm.*;
+
+import java.util.*;
+
+/**
+ * Regression check of all algorithms on the seeded corpus of games.
+ * For each algorithm the test sums results over the corpus: won and lost games, unexpected errors, steps,
+ * expanded nodes and the checksum of the found paths, and compares them with the recorded values.
+ * So any change of the paths or of the order of the search (e.g. ties in OPEN) is noticed.
+ * After an intended change of the results run the test with --print and update EXPECTED.
+ * Run: java -cp out game.RegressionCorpusTest [--print]
+ */
+public class RegressionCorpusTest {
+    private static final int GAMES_9 = 5000, GAMES_20 = 500;    // games of the corpus on 9x9 and 20x20.
+    /**
+     * Recorded results: algorithm, field size, summary of the corpus.
+     */
+    private static final String[][] EXPECTED = {
+            {"Backtracking", "9", "win=4871 lose=129 error=0 steps=53675 nodes=29785245 paths=7f9d412450e196eb"},
+            {"AStar", "9", "win=4882 lose=118 error=0 steps=51395 nodes=162214 paths=31766719f3cf1725"},
+            {"LayeredSearch", "9", "win=4894 lose=106 error=0 steps=50783 nodes=627442 paths=a4a231fcc8a59312"},
+            {"JumpPointSearch", "9", "win=4894 lose=106 error=0 steps=50783 nodes=36150 paths=a2c362a647285302"},
+            {"AStar", "20", "win=500 lose=0 error=0 steps=11035 nodes=90238 paths=78a986c85f6615fd"},
+            {"LayeredSearch", "20", "win=500 lose=0 error=0 steps=10970 nodes=375515 paths=a5aa5c02dfb3b1ea"},
+            {"JumpPointSearch", "20", "win=500 lose=0 error=0 steps=10970 nodes=4569 paths=f53cb5255b87cae8"}
+    };
+
+    public static void main(String[] args) throws IncorrectDataException {
+        boolean print = args.length > 0 && args[0].equals("--print");
+        Map<String, Algorithm> algorithms = BulkSolver.getAlgorithms();
+        List<String> failures = new ArrayList<>();
+        for (String[] expected : EXPECTED) {
+            int size = Integer.parseInt(expected[1]);
+            String actual = summarize(algorithms.get(expected[0]), size, size == 9 ? GAMES_9 : GAMES_20);
+            if (print)
+                System.out.println("            {\"" + expected[0] + "\", \"" + size + "\", \"" + actual + "\"},");
+            else if (!actual.equals(expected[2]))
+                failures.add(expected[0] + " " + size + "x" + size + ": expected " + expected[2] + ", found " + actual);
+        }
+        if (print)
+            return;
+        SolutionDatabaseTest.check(failures.isEmpty(), String.join("\n", failures));
+        System.out.println("RegressionCorpusTest: OK");
+    }
+
+    /**
+     * Solves the games of the seeded corpus: the same number of games of both scenarios
+     * from FieldGenerator with seed equal to the size of the field, games lost on spawn are skipped.
+     * @param algorithm Algorithm to check.
+     * @param size Width and height of the field.
+     * @param count Number of games.
+     * @return summary of the results.
+     * @throws IncorrectDataException If the game cannot be generated.
+     */
+    private static String summarize(Algorithm algorithm, int size, int count) throws IncorrectDataException {
+        FieldGenerator generator = new FieldGenerator(size, size, size).skipBadFields(true);
+        PackedPath path = new PackedPath();
+        SearchStatistics statistics = new SearchStatistics();
+        int wins = 0, loses = 0, errors = 0;
+        long steps = 0, checksum = 0;
+        for (int i = 0; i < count; i++) {
+            Game game = generator.next(i % 2 + 1);
+            try {
+                algorithm.getMinimalPath(game.getField(), game.getHarry(), game.getExit(), path, statistics);
+                wins++;
+                steps += path.getSteps();
+                for (int j = 0; j <= path.getSteps(); j++)
+                    checksum = checksum * 31 + path.getCell(j);
+            } catch (NoPathException e) {
+                loses++;
+            } catch (RuntimeException e) {
+                errors++;
+            }
+            checksum = checksum * 31 + i;
+        }
+        return "win=" + wins + " lose=" + loses + " error=" + errors + " steps=" + steps
+                + " nodes=" + statistics.getNodesExpanded() + " paths=" + Long.toHexString(checksum);
+    }
+}
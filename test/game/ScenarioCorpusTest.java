@@ -0,0 +1,100 @@
+package game;
+
+import agents.Agent;
+import algorithm.IncorrectDataException;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Round-trip checks of the records of ScenarioCorpus: games written by the Writer are read back unchanged,
+ * corrupted records are rejected.
+ * Run: java -cp out game.ScenarioCorpusTest
+ */
+public class ScenarioCorpusTest {
+
+    public static void main(String[] args) throws IOException, IncorrectDataException {
+        fileRoundTrip(9, 9, 3000);
+        fileRoundTrip(1000, 1000, 300);
+        fileRoundTrip(37, 5, 300);
+        corruptedRecords();
+        System.out.println("ScenarioCorpusTest: OK");
+    }
+
+    /**
+     * Writes seeded games into the temporary corpus and reads them back.
+     * @param width Width of the field.
+     * @param height Height of the field.
+     * @param count Number of games.
+     * @throws IOException If the file cannot be written or read.
+     * @throws IncorrectDataException If the game cannot be generated or read.
+     */
+    private static void fileRoundTrip(int width, int height, int count) throws IOException, IncorrectDataException {
+        File file = File.createTempFile("corpus", ".bin");
+        try {
+            FieldGenerator generator = new FieldGenerator(width, height, 42);
+            Game[] games = new Game[count];
+            try (ScenarioCorpus.Writer writer = ScenarioCorpus.create(file.getPath(), width, height)) {
+                for (int i = 0; i < count; i++) {
+                    games[i] = generator.next(i % 2 + 1);
+                    writer.add(games[i]);
+                }
+            }
+            try (ScenarioCorpus corpus = ScenarioCorpus.open(file.getPath())) {
+                SolutionDatabaseTest.check(corpus.size() == count, "size of the corpus " + width + "x" + height);
+                SolutionDatabaseTest.check(corpus.getWidth() == width && corpus.getHeight() == height,
+                        "field of the corpus " + width + "x" + height);
+                for (int i = 0; i < count; i++)
+                    SolutionDatabaseTest.check(describe(games[i]).equals(describe(corpus.getGame(i))),
+                            "game " + i + " of the corpus " + width + "x" + height);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Records with cells outside of the field or with agents in the same cell are rejected.
+     */
+    private static void corruptedRecords() {
+        long harry = 0, filch = 10, cat = 20, book = 30, cloak = 40, exit = 50, scenario = 1;
+        long bits = ScenarioCorpus.CELL_BITS;
+        long low = harry | filch << bits | cat << 2 * bits;
+        long high = book | cloak << bits | exit << 2 * bits | scenario << 3 * bits;
+        try {
+            ScenarioCorpus.decode(low, high, 9, 9);
+        } catch (IncorrectDataException e) {
+            throw new AssertionError("correct record is rejected: " + e.getMessage());
+        }
+        rejected(low, book | cloak << bits | 81L << 2 * bits | scenario << 3 * bits, "cell outside of the field");
+        rejected(low, book | book << bits | exit << 2 * bits | scenario << 3 * bits, "agents in the same cell");
+    }
+
+    /**
+     * Checks that the record cannot be decoded on the 9x9 field.
+     * @param low First 8 bytes of the record.
+     * @param high Last 8 bytes of the record.
+     * @param message Description of the corruption.
+     */
+    private static void rejected(long low, long high, String message) {
+        try {
+            ScenarioCorpus.decode(low, high, 9, 9);
+        } catch (IncorrectDataException e) {
+            return;
+        }
+        throw new AssertionError("record is not rejected: " + message);
+    }
+
+    /**
+     * Returns positions of all agents and the scenario of the game.
+     * @param game Game.
+     * @return text which is equal for equal games.
+     */
+    private static String describe(Game game) {
+        StringBuilder text = new StringBuilder(game.getWidth() + "x" + game.getHeight());
+        for (Agent agent : new Agent[]{game.getHarry(), game.getFilch(), game.getCat(), game.getBook(),
+                game.getCloak(), game.getExit()})
+            text.append(" [").append(agent.x).append(',').append(agent.y).append(']');
+        return text.append(" s").append(game.getHarry().getScenario()).toString();
+    }
+}
@@ -0,0 +1,120 @@
+package game;
+
+import agents.Path;
+import agents.Stencil;
+
+import java.util.*;
+
+/**
+ * Round-trip checks of the records of SolutionDatabase: packed paths and dense ranks of the configurations.
+ * Run: java -cp out game.SolutionDatabaseTest
+ */
+public class SolutionDatabaseTest {
+
+    public static void main(String[] args) {
+        pathRoundTrip();
+        statusOnlyRecords();
+        notStoredPaths();
+        denseRanks();
+        System.out.println("SolutionDatabaseTest: OK");
+    }
+
+    /**
+     * Random walks of every stored length are decoded to the same cells.
+     */
+    private static void pathRoundTrip() {
+        Random random = new Random(42);
+        for (int steps = 0; steps <= SolutionDatabase.MAX_STEPS; steps++) {
+            for (int n = 0; n < 200; n++) {
+                Path[] path = randomWalk(random, steps);
+                long[] record = SolutionDatabase.encode(SolutionDatabase.WIN, path);
+                check((record[0] & 7) == SolutionDatabase.WIN, "status of " + Arrays.toString(path));
+                check(Arrays.toString(path).equals(Arrays.toString(SolutionDatabase.decode(record[0], record[1]))),
+                        "decoded path of " + Arrays.toString(path));
+            }
+        }
+    }
+
+    /**
+     * Records without a path keep only the status.
+     */
+    private static void statusOnlyRecords() {
+        for (int status : new int[]{SolutionDatabase.LOSE, SolutionDatabase.BAD_FIELD}) {
+            long[] record = SolutionDatabase.encode(status, null);
+            check(record[0] == status && record[1] == 0, "record of status " + status);
+        }
+    }
+
+    /**
+     * Too long paths and paths with jumps are marked as LONG_PATH.
+     */
+    private static void notStoredPaths() {
+        Path[] tooLong = randomWalk(new Random(7), SolutionDatabase.MAX_STEPS + 1);
+        check(SolutionDatabase.encode(SolutionDatabase.WIN, tooLong)[0] == SolutionDatabase.LONG_PATH,
+                "path longer than MAX_STEPS");
+        Path[] jump = {new Path(0, 0), new Path(2, 0)};
+        check(SolutionDatabase.encode(SolutionDatabase.WIN, jump)[0] == SolutionDatabase.LONG_PATH,
+                "path with a jump");
+    }
+
+    /**
+     * Configurations of the pair (Filch, Cat) get different ranks from 0 to the number of configurations.
+     */
+    private static void denseRanks() {
+        int[][] pairs = {{1, 2}, {40, 80}, {80, 1}, {10, 70}};
+        for (int[] pair : pairs) {
+            long[] free = SolutionDatabase.getFreeCells(pair[0], pair[1]);
+            long count = SolutionDatabase.getConfigurationCount(free);
+            boolean[] seen = new boolean[(int) count];
+            for (int book = 0; book < SolutionDatabase.CELLS; book++) {
+                for (int cloak = 0; cloak < SolutionDatabase.CELLS; cloak++) {
+                    for (int exit = 0; exit < SolutionDatabase.CELLS; exit++) {
+                        if (book == cloak || book == exit || cloak == exit || !SolutionDatabase.isSet(free, book)
+                                || !SolutionDatabase.isSet(free, cloak) || !SolutionDatabase.isSet(free, exit))
+                            continue;
+                        long rank = SolutionDatabase.getConfigurationRank(free, book, cloak, exit);
+                        check(rank >= 0 && rank < count && !seen[(int) rank],
+                                "rank of " + book + "," + cloak + "," + exit + " for pair " + Arrays.toString(pair));
+                        seen[(int) rank] = true;
+                    }
+                }
+            }
+            for (boolean s : seen)
+                check(s, "all ranks are used for pair " + Arrays.toString(pair));
+        }
+    }
+
+    /**
+     * Makes a random path of neighbour cells on the 9x9 field.
+     * @param random Source of the moves.
+     * @param steps Number of steps.
+     * @return the path with steps + 1 cells.
+     */
+    private static Path[] randomWalk(Random random, int steps) {
+        Path[] path = new Path[steps + 1];
+        int x = random.nextInt(Game.SIZE), y = random.nextInt(Game.SIZE);
+        path[0] = new Path(x, y);
+        for (int i = 1; i <= steps; i++) {
+            int nx, ny;
+            do {
+                int move = random.nextInt(Stencil.MOVEMENT.size());
+                nx = x + Stencil.MOVEMENT.dx(move);
+                ny = y + Stencil.MOVEMENT.dy(move);
+            } while (nx < 0 || ny < 0 || nx >= Game.SIZE || ny >= Game.SIZE);
+            x = nx;
+            y = ny;
+            path[i] = new Path(x, y);
+        }
+        return path;
+    }
+
+    /**
+     * Fails the test if the condition is false.
+     * @param condition Checked condition.
+     * @param message Description of the check.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}